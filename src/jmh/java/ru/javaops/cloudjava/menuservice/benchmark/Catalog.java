@@ -0,0 +1,86 @@
+package ru.javaops.cloudjava.menuservice.benchmark;
+
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.Ingredient;
+import ru.javaops.cloudjava.menuservice.storage.model.IngredientCollection;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Генератор тестового каталога заданного размера и заменитель репозитория, работающий в памяти.
+ * Строки, которые в реальном каталоге повторяются редко (описание, ссылка на фото, состав),
+ * здесь общие для всех блюд, чтобы каталог из миллиона блюд помещался в heap бенчмарка.
+ */
+final class Catalog {
+
+    private static final Category[] CATEGORIES = Category.values();
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 2, 18, 10, 0);
+    private static final IngredientCollection INGREDIENTS = new IngredientCollection(List.of(
+            new Ingredient("greens", 10),
+            new Ingredient("tomatoes", 100),
+            new Ingredient("sauce", 200)
+    ));
+
+    private Catalog() {
+    }
+
+    static String name(int i) {
+        return "Dish %07d".formatted(i);
+    }
+
+    static List<MenuItem> menuItems(int size) {
+        List<MenuItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(MenuItem.builder()
+                    .id((long) i + 1)
+                    .name(name(i))
+                    .description("Nice dish")
+                    .price(price(i))
+                    .category(CATEGORIES[i % CATEGORIES.length])
+                    .timeToCook(100 + i % 1000)
+                    .weight(100 + i % 500)
+                    .imageUrl("http://images.com/dish.png")
+                    .createdAt(CREATED_AT.plusMinutes(i))
+                    .updatedAt(CREATED_AT.plusMinutes(i))
+                    .ingredientCollection(INGREDIENTS)
+                    .version(0L)
+                    .build());
+        }
+        return items;
+    }
+
+    static List<MenuItemProjection> projections(int size) {
+        List<MenuItemProjection> projections = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            projections.add(new MenuItemProjection((long) i + 1, name(i), price(i)));
+        }
+        return projections;
+    }
+
+    /**
+     * Репозиторий, который отдает переданные проекции из getMenuInfoForAll и не поддерживает остальные методы.
+     */
+    static MenuItemRepository repository(List<MenuItemProjection> projections) {
+        return (MenuItemRepository) Proxy.newProxyInstance(
+                MenuItemRepository.class.getClassLoader(),
+                new Class<?>[]{MenuItemRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("getMenuInfoForAll")) {
+                        return projections;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }
+        );
+    }
+
+    private static BigDecimal price(int i) {
+        return BigDecimal.valueOf(100 + i % 99_900, 2);
+    }
+}
@@ -0,0 +1,72 @@
+package ru.javaops.cloudjava.menuservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.javaops.cloudjava.menuservice.dto.MenuInfo;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.OrderMenuResponse;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapperImpl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость сериализации в JSON списка {@link MenuItemDto} из catalogSize блюд и ответа {@link OrderMenuResponse}
+ * на заказ из 20 блюд. JSON пишется в поток без буфера в памяти, как при записи в ответ сервера.
+ * ObjectMapper настраивается так же, как в Spring Boot по умолчанию.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonSerializationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class MenuListState {
+        @Param({"100", "10000", "1000000"})
+        private int catalogSize;
+
+        private ObjectMapper objectMapper;
+        private List<MenuItemDto> menus;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            menus = new MenuItemMapperImpl().toDtoList(Catalog.menuItems(catalogSize));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class OrderResponseState {
+        private ObjectMapper objectMapper;
+        private OrderMenuResponse response;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            objectMapper = Jackson2ObjectMapperBuilder.json().build();
+            List<MenuInfo> infos = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                infos.add(i % 10 == 9
+                        ? new MenuInfo("Missing dish " + i, null, false)
+                        : new MenuInfo(Catalog.name(i), BigDecimal.valueOf(100 + i, 2), true));
+            }
+            response = new OrderMenuResponse(infos);
+        }
+    }
+
+    @Benchmark
+    public void serializeMenuList(MenuListState state) throws IOException {
+        state.objectMapper.writeValue(OutputStream.nullOutputStream(), state.menus);
+    }
+
+    @Benchmark
+    public byte[] serializeOrderResponse(OrderResponseState state) throws IOException {
+        return state.objectMapper.writeValueAsBytes(state.response);
+    }
+}
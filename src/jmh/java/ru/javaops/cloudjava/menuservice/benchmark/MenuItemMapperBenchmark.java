@@ -0,0 +1,39 @@
+package ru.javaops.cloudjava.menuservice.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapperImpl;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость {@link MenuItemMapper#toDtoList} для списка из catalogSize блюд.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MenuItemMapperBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int catalogSize;
+
+    private MenuItemMapper mapper;
+    private List<MenuItem> items;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = new MenuItemMapperImpl();
+        items = Catalog.menuItems(catalogSize);
+    }
+
+    @Benchmark
+    public List<MenuItemDto> toDtoList() {
+        return mapper.toDtoList(items);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.javaops.cloudjava.menuservice.benchmark;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.cloudjava.menuservice.dto.OrderMenuRequest;
+import ru.javaops.cloudjava.menuservice.dto.OrderMenuResponse;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapperImpl;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.impl.MenuServiceImpl;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость {@link MenuServiceImpl#getMenusForOrder} на прогретом индексе цен:
+ * заказ из {@value #ORDER_SIZE} названий, {@value #MISSING} из которых нет в каталоге.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MenuServiceBenchmark {
+
+    private static final int ORDER_SIZE = 20;
+    private static final int MISSING = 2;
+
+    @Param({"100", "10000", "1000000"})
+    private int catalogSize;
+
+    private MenuServiceImpl menuService;
+    private OrderMenuRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var registry = new SimpleMeterRegistry();
+        var guard = new DatabaseGuard(CircuitBreaker.ofDefaults("benchmark"), registry);
+        var priceIndex = new MenuPriceIndex(Catalog.repository(Catalog.projections(catalogSize)), guard,
+                Duration.ofSeconds(10), registry);
+        // остальные зависимости getMenusForOrder не использует
+        menuService = new MenuServiceImpl(new MenuItemMapperImpl(), null, null, priceIndex, null, null, null, null, null);
+        Set<String> names = new LinkedHashSet<>();
+        for (int i = 0; i < ORDER_SIZE - MISSING; i++) {
+            names.add(Catalog.name((int) ((long) i * catalogSize / (ORDER_SIZE - MISSING))));
+        }
+        for (int i = 0; i < MISSING; i++) {
+            names.add("Missing dish " + i);
+        }
+        request = new OrderMenuRequest(names);
+        // загружаем индекс до замеров
+        priceIndex.snapshot();
+    }
+
+    @Benchmark
+    public OrderMenuResponse getMenusForOrder() {
+        return menuService.getMenusForOrder(request);
+    }
+}
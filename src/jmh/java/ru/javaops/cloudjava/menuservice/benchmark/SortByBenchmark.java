@@ -0,0 +1,90 @@
+package ru.javaops.cloudjava.menuservice.benchmark;
+
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.openjdk.jmh.annotations.*;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.PageCursor;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapperImpl;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem_;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость построения запросов списка блюд через Criteria API с сортировкой {@link SortBy}:
+ * полного списка категории и страницы после курсора. Запросы не выполняются, поэтому стоимость
+ * не зависит от размера каталога. Hibernate запускается без подключения к БД.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SortByBenchmark {
+
+    @Param({"AZ", "PRICE_DESC", "DATE_ASC"})
+    private SortBy sortBy;
+
+    private SessionFactory sessionFactory;
+    private Session session;
+    private CriteriaBuilder cb;
+    private PageCursor cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var registry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                // не обращаемся к БД за метаданными при старте (старое и новое название настройки)
+                .applySetting("hibernate.temp.use_jdbc_metadata_defaults", false)
+                .applySetting("hibernate.boot.allow_jdbc_metadata_access", false)
+                .applySetting(AvailableSettings.HBM2DDL_AUTO, "none")
+                .build();
+        sessionFactory = new MetadataSources(registry)
+                .addAnnotatedClass(MenuItem.class)
+                .buildMetadata()
+                .buildSessionFactory();
+        session = sessionFactory.openSession();
+        cb = sessionFactory.getCriteriaBuilder();
+        MenuItemDto middle = new MenuItemMapperImpl().toDto(Catalog.menuItems(50).get(25));
+        cursor = sortBy.cursorAfter(middle);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        session.close();
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public TypedQuery<MenuItem> categoryQuery() {
+        CriteriaQuery<MenuItem> query = cb.createQuery(MenuItem.class);
+        Root<MenuItem> root = query.from(MenuItem.class);
+        query.orderBy(sortBy.getOrder(cb, root));
+        query.where(cb.equal(root.get(MenuItem_.category), Category.DRINKS));
+        return session.createQuery(query.select(root));
+    }
+
+    @Benchmark
+    public TypedQuery<MenuItem> keysetPageQuery() {
+        CriteriaQuery<MenuItem> query = cb.createQuery(MenuItem.class);
+        Root<MenuItem> root = query.from(MenuItem.class);
+        query.where(cb.and(
+                cb.equal(root.get(MenuItem_.category), Category.DRINKS),
+                sortBy.getKeysetPredicate(cb, root, cursor)
+        ));
+        query.orderBy(sortBy.getKeysetOrder(cb, root));
+        return session.createQuery(query.select(root)).setMaxResults(20);
+    }
+}
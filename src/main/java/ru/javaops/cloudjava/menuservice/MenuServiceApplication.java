@@ -2,8 +2,10 @@ package ru.javaops.cloudjava.menuservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MenuServiceApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(MenuServiceApplication.class, args);
@@ -0,0 +1,21 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.javaops.cloudjava.menuservice.service.admission.AdmissionController;
+
+/**
+ * Контроль допуска запросов по классам (см. {@link AdmissionController}). Лимиты публикуются метриками
+ * menu.admission.* с тегом class.
+ */
+@Configuration
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+
+    @Bean
+    public AdmissionController admissionController(AdmissionProperties properties, MeterRegistry registry) {
+        return new AdmissionController(properties, registry);
+    }
+}
@@ -0,0 +1,32 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.javaops.cloudjava.menuservice.service.admission.TrafficClass;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Настройки контроля допуска запросов.
+ *
+ * @param enabled    включен ли контроль допуска
+ * @param totalLimit общий лимит одновременных запросов всех классов
+ * @param retryAfter через сколько клиенту предлагается повторить отклоненный запрос (заголовок Retry-After)
+ * @param classes    лимиты классов запросов
+ */
+@ConfigurationProperties("menu.admission")
+public record AdmissionProperties(boolean enabled,
+                                  int totalLimit,
+                                  Duration retryAfter,
+                                  Map<TrafficClass, ClassLimits> classes) {
+
+    /**
+     * @param initialLimit  начальный лимит одновременных запросов класса
+     * @param minLimit      нижняя граница адаптивного лимита
+     * @param maxLimit      верхняя граница адаптивного лимита
+     * @param latencyTarget запрос дольше этого времени уменьшает лимит
+     * @param totalShare    какую долю общего лимита могут занимать запросы класса
+     */
+    public record ClassLimits(int initialLimit, int minLimit, int maxLimit, Duration latencyTarget, double totalShare) {
+    }
+}
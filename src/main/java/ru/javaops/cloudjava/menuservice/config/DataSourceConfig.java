@@ -0,0 +1,62 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.javaops.cloudjava.menuservice.storage.datasource.DeadlineAwareDataSource;
+import ru.javaops.cloudjava.menuservice.storage.datasource.ReadWriteRoutingDataSource;
+import ru.javaops.cloudjava.menuservice.storage.datasource.ReadYourWrites;
+
+import javax.sql.DataSource;
+
+/**
+ * Два пула соединений - основной БД и реплики - и источник данных, выбирающий пул для каждой транзакции
+ * (см. {@link ReadWriteRoutingDataSource}). Оба пула зарегистрированы как бины, поэтому метрики hikaricp.*
+ * публикуются для каждого из них с тегом pool. Миграции Flyway всегда выполняются на основной БД.
+ * SQL запросы ограничиваются крайним сроком HTTP запроса (см. {@link DeadlineAwareDataSource}).
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class DataSourceConfig {
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    @ConfigurationProperties("menu.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties, ReplicaDataSourceProperties replica) {
+        var dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (replica.url() != null) {
+            dataSource.setJdbcUrl(replica.url());
+        }
+        if (replica.username() != null) {
+            dataSource.setUsername(replica.username());
+        }
+        if (replica.password() != null) {
+            dataSource.setPassword(replica.password());
+        }
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReadYourWrites readYourWrites,
+                                 MeterRegistry registry) {
+        var routing = new ReadWriteRoutingDataSource(primary, replica, readYourWrites, registry);
+        return new LazyConnectionDataSourceProxy(new DeadlineAwareDataSource(routing));
+    }
+}
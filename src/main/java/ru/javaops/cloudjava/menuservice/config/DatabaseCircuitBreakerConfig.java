@@ -0,0 +1,40 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+
+/**
+ * Circuit breaker для чтений меню из БД (см. {@link DatabaseGuard}). Состояние и счетчики breaker
+ * публикуются метриками resilience4j.circuitbreaker.* с тегом name=menu-db.
+ */
+@Configuration
+@EnableConfigurationProperties(DatabaseCircuitBreakerProperties.class)
+public class DatabaseCircuitBreakerConfig {
+
+    public static final String BREAKER_NAME = "menu-db";
+
+    @Bean
+    public CircuitBreaker databaseCircuitBreaker(DatabaseCircuitBreakerProperties properties, MeterRegistry meterRegistry) {
+        var config = CircuitBreakerConfig.custom()
+                .failureRateThreshold(properties.failureRateThreshold())
+                .slowCallDurationThreshold(properties.slowCallDurationThreshold())
+                .slowCallRateThreshold(properties.slowCallRateThreshold())
+                .slidingWindowSize(properties.slidingWindowSize())
+                .minimumNumberOfCalls(properties.minimumNumberOfCalls())
+                .waitDurationInOpenState(properties.waitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(properties.permittedCallsInHalfOpen())
+                // ошибки, не связанные с доступностью БД, не размыкают breaker
+                .recordException(DatabaseGuard::isDatabaseFailure)
+                .build();
+        var registry = CircuitBreakerRegistry.of(config);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry).bindTo(meterRegistry);
+        return registry.circuitBreaker(BREAKER_NAME);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Настройки circuit breaker для чтений меню из БД.
+ *
+ * @param failureRateThreshold      доля ошибок в процентах, при которой breaker размыкается
+ * @param slowCallDurationThreshold запрос дольше этого времени считается медленным
+ * @param slowCallRateThreshold     доля медленных запросов в процентах, при которой breaker размыкается
+ * @param slidingWindowSize         по скольким последним запросам считаются доли
+ * @param minimumNumberOfCalls      минимальное количество запросов до первого расчета долей
+ * @param waitDurationInOpenState   сколько breaker остается разомкнутым до пробных запросов
+ * @param permittedCallsInHalfOpen  количество пробных запросов
+ */
+@ConfigurationProperties("menu.db-breaker")
+public record DatabaseCircuitBreakerProperties(float failureRateThreshold,
+                                               Duration slowCallDurationThreshold,
+                                               float slowCallRateThreshold,
+                                               int slidingWindowSize,
+                                               int minimumNumberOfCalls,
+                                               Duration waitDurationInOpenState,
+                                               int permittedCallsInHalfOpen) {
+}
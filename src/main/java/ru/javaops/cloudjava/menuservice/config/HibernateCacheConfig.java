@@ -0,0 +1,65 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Локальный JCache (Caffeine) для кэша второго уровня Hibernate. Регионы создаются заранее по настройкам
+ * menu.hibernate-cache с ограничением размера и временем жизни записей; обращение к региону, которого нет
+ * в настройках, приводит к ошибке при старте (missing_cache_strategy: fail).
+ * Статистика регионов публикуется в Micrometer метриками cache.* с тегом cache - названием региона.
+ */
+@Configuration
+@EnableConfigurationProperties(HibernateCacheProperties.class)
+public class HibernateCacheConfig {
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(HibernateCacheProperties properties) {
+        var provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        // отдельный менеджер для каждого контекста: менеджер с URI по умолчанию общий для всех контекстов в JVM
+        var cacheManager = provider.getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        properties.regions().forEach((name, region) -> cacheManager.createCache(name, configuration(
+                OptionalLong.of(region.maxSize()), OptionalLong.of(region.ttl().toNanos()))));
+        // метки времени изменения таблиц не должны вытесняться раньше результатов запросов,
+        // иначе кэш запросов не сможет определить, что результат устарел
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                configuration(OptionalLong.empty(), OptionalLong.empty()));
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CacheManager hibernateCacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+    }
+
+    @Bean
+    public MeterBinder hibernateCacheMetrics(CacheManager hibernateCacheManager) {
+        return registry -> hibernateCacheManager.getCacheNames().forEach(name ->
+                JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(name), Tags.of("cache.manager", "hibernate")));
+    }
+
+    private static CaffeineConfiguration<Object, Object> configuration(OptionalLong maxSize, OptionalLong ttlNanos) {
+        var configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(maxSize);
+        configuration.setExpireAfterWrite(ttlNanos);
+        // Hibernate хранит в кэше неизменяемое разобранное состояние сущностей, копировать его не нужно
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        return configuration;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Регионы кэша второго уровня Hibernate и кэша запросов: название региона - максимальное количество записей и время жизни записи.
+ */
+@ConfigurationProperties("menu.hibernate-cache")
+public record HibernateCacheProperties(Map<String, Region> regions) {
+
+    public record Region(long maxSize, Duration ttl) {
+    }
+}
@@ -0,0 +1,11 @@
+package ru.javaops.cloudjava.menuservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Подключение к реплике PostgreSQL. Незаданные url, username и password берутся из spring.datasource,
+ * настройки пула задаются в menu.datasource.replica.hikari.
+ */
+@ConfigurationProperties("menu.datasource.replica")
+public record ReplicaDataSourceProperties(String url, String username, String password) {
+}
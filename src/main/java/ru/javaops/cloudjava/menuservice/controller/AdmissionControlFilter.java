@@ -0,0 +1,70 @@
+package ru.javaops.cloudjava.menuservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.javaops.cloudjava.menuservice.config.AdmissionProperties;
+import ru.javaops.cloudjava.menuservice.service.admission.AdmissionController;
+import ru.javaops.cloudjava.menuservice.service.admission.TrafficClass;
+
+import java.io.IOException;
+
+/**
+ * Контроль допуска запросов до проверки токена и обработки: запрос сверх лимита своего класса
+ * (см. {@link AdmissionController}) сразу получает 503 с заголовком Retry-After.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 1)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final String retryAfterSeconds;
+
+    public AdmissionControlFilter(AdmissionController admissionController,
+                                  ObjectMapper objectMapper,
+                                  AdmissionProperties properties) {
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+        this.enabled = properties.enabled();
+        this.retryAfterSeconds = Long.toString(Math.max(1, properties.retryAfter().toSeconds()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        var trafficClass = enabled ? TrafficClass.classify(request.getMethod(), request.getRequestURI()) : null;
+        if (trafficClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        var permit = admissionController.tryAcquire(trafficClass);
+        if (permit == null) {
+            reject(trafficClass, request, response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permit.release();
+        }
+    }
+
+    private void reject(TrafficClass trafficClass, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("Rejected {} request {} {}: admission limit reached", trafficClass, request.getMethod(), request.getRequestURI());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        ProblemResponses.write(objectMapper, request, response, HttpStatus.SERVICE_UNAVAILABLE,
+                "Service is overloaded, retry after " + retryAfterSeconds + " s.");
+    }
+}
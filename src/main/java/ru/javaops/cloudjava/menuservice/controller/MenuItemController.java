@@ -1,24 +1,49 @@
 package ru.javaops.cloudjava.menuservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.headers.Header;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ru.javaops.cloudjava.menuservice.dto.*;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
 import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.cache.CatalogVersion;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuJsonCache;
+import ru.javaops.cloudjava.menuservice.service.feed.MenuChangeFeed;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 @Tag(name = "MenuItemController", description = "REST API для работы с меню.")
 @Slf4j
@@ -27,7 +52,22 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MenuItemController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_CHANGES_LIMIT = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    private static final int MAX_SUGGESTIONS = 20;
+    private static final int DEFAULT_SUGGESTIONS = 10;
+    // ответ можно хранить в любом кэше, но перед использованием его нужно перепроверить по ETag
+    private static final CacheControl CACHE_CONTROL = CacheControl.noCache().cachePublic();
+
     private final MenuService menuService;
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    private final MenuJsonCache menuJsonCache;
+    private final MenuChangeFeed menuChangeFeed;
 
     @Operation(
             summary = "${api.menu-create.summary}",
@@ -48,12 +88,46 @@ public class MenuItemController {
                     content = @Content(
                             schema = @Schema(implementation = ProblemDetail.class)
                     )),
+            @ApiResponse(
+                    responseCode = "422",
+                    description = "${api.response.createIdempotencyKeyReused}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )),
+            @ApiResponse(
+                    responseCode = "503",
+                    description = "${api.response.createIdempotencyKeysExhausted}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )),
     })
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public MenuItemDto createMenuItem(@RequestBody @Valid CreateMenuRequest dto) {
-        log.info("Received POST request to create MenuItem: {}", dto);
-        return menuService.createMenuItem(dto);
+    public MenuItemDto createMenuItem(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false)
+                                      @Size(max = 255, message = "Idempotency-Key должен быть не длиннее 255 символов.") String idempotencyKey,
+                                      @RequestBody @Valid CreateMenuRequest dto,
+                                      Principal principal) {
+        log.info("Received POST request to create MenuItem: {}, Idempotency-Key={}", dto, idempotencyKey);
+        return menuService.createMenuItem(dto, principal.getName(), idempotencyKey);
+    }
+
+    @Operation(
+            summary = "${api.menu-bulk-create.summary}",
+            description = "${api.menu-bulk-create.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.response.bulkCreateOk}"),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.bulkCreateBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )),
+    })
+    @PostMapping("/bulk")
+    public BulkCreateMenuResponse createMenuItems(@RequestBody @Valid BulkCreateMenuRequest request) {
+        log.info("Received POST request to create {} MenuItems", request.getItems().size());
+        return menuService.createMenuItems(request);
     }
 
     @Operation(
@@ -90,12 +164,50 @@ public class MenuItemController {
                             schema = @Schema(implementation = ProblemDetail.class)
                     )
             ),
+            @ApiResponse(
+                    responseCode = "412",
+                    description = "${api.response.updatePreconditionFailed}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
     })
     @PatchMapping("/{id}")
-    public MenuItemDto updateMenuItem(@PathVariable("id") @Positive(message = "id должен быть > 0.") Long id,
-                                      @RequestBody @Valid UpdateMenuRequest update) {
-        log.info("Received PATCH request to update MenuItem with id={}. Update params: {}", id, update);
-        return menuService.updateMenuItem(id, update);
+    public ResponseEntity<MenuItemDto> updateMenuItem(@PathVariable("id") @Positive(message = "id должен быть > 0.") Long id,
+                                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                      @RequestBody @Valid UpdateMenuRequest update) {
+        log.info("Received PATCH request to update MenuItem with id={}, If-Match={}. Update params: {}", id, ifMatch, update);
+        var updated = menuService.updateMenuItem(id, update, expectedVersion(ifMatch));
+        return ResponseEntity.ok()
+                .eTag(versionEtag(updated.getVersion()))
+                .body(updated);
+    }
+
+    @Operation(
+            summary = "${api.menu-bulk-update.summary}",
+            description = "${api.menu-bulk-update.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.response.bulkUpdateOk}"),
+            @ApiResponse(
+                    responseCode = "409",
+                    description = "${api.response.bulkUpdateConflict}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.updateBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            ),
+    })
+    @PatchMapping("/bulk")
+    public BulkUpdateMenuResponse updateMenuItems(@RequestBody @Valid BulkUpdateMenuRequest request) {
+        log.info("Received PATCH request to update {} MenuItems", request.getItems().size());
+        return menuService.updateMenuItems(request);
     }
 
     @Operation(
@@ -103,7 +215,15 @@ public class MenuItemController {
             description = "${api.menu-get.description}"
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "${api.response.getOk}"),
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.getOk}",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            schema = @Schema(implementation = MenuItemDto.class)
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "${api.response.notModified}"),
             @ApiResponse(
                     responseCode = "404",
                     description = "${api.response.notFound}",
@@ -113,9 +233,40 @@ public class MenuItemController {
             )
     })
     @GetMapping("/{id}")
-    public MenuItemDto getMenu(@PathVariable("id") @Positive(message = "id должен быть > 0.") Long id) {
-        log.info("Received request to GET MenuItem with id={}", id);
-        return menuService.getMenu(id);
+    public ResponseEntity<?> getMenu(@PathVariable("id") @Positive(message = "id должен быть > 0.") Long id,
+                                     @RequestParam(value = "fields", required = false) String fields,
+                                     WebRequest request) {
+        log.info("Received request to GET MenuItem with id={}, fields={}", id, fields);
+        // ETag - версия блюда, поэтому его же клиент передает в If-Match при обновлении
+        if (fields != null) {
+            var fieldSet = MenuField.fromString(fields);
+            // версию берем из кэша, чтобы ответ 304 не читал блюдо из БД
+            if (request.checkNotModified(fieldsEtag(menuJsonCache.getMenu(id).version(), fieldSet))) {
+                return notModified();
+            }
+            var withVersion = EnumSet.copyOf(fieldSet);
+            withVersion.add(MenuField.VERSION);
+            var menu = menuService.getMenu(id, withVersion);
+            // блюдо могло измениться после чтения версии из кэша, ETag соответствует прочитанным данным
+            var etag = fieldsEtag(menu.getVersion(), fieldSet);
+            if (!fieldSet.contains(MenuField.VERSION)) {
+                menu.setVersion(null);
+            }
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CACHE_CONTROL)
+                    .body(menu);
+        }
+        var encoded = menuJsonCache.getMenu(id);
+        var etag = versionEtag(encoded.version());
+        if (request.checkNotModified(etag)) {
+            return notModified();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(encoded.json());
     }
 
     @Operation(
@@ -123,7 +274,16 @@ public class MenuItemController {
             description = "${api.menu-list-get.description}"
     )
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "${api.response.getListOk}"),
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.getListOk}",
+                    headers = @Header(name = NEXT_CURSOR_HEADER, description = "${api.response.getListNextCursor}"),
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = MenuItemDto.class))
+                    )
+            ),
+            @ApiResponse(responseCode = "304", description = "${api.response.notModified}"),
             @ApiResponse(
                     responseCode = "400",
                     description = "${api.response.getListBadRequest}",
@@ -133,10 +293,234 @@ public class MenuItemController {
             )
     })
     @GetMapping
-    public List<MenuItemDto> getMenus(@RequestParam("category") @NotBlank(message = "Категория не должна быть пустой.") String category,
-                                      @RequestParam(value = "sort", defaultValue = "az") @NotBlank(message = "Параметр сортировки не должен быть пустым.") String sort) {
-        log.info("Received request to GET list of MenuItems for category={}, sorted by={}", category, sort);
-        return menuService.getMenusFor(Category.fromString(category), SortBy.fromString(sort));
+    public ResponseEntity<?> getMenus(@RequestParam("category") @NotBlank(message = "Категория не должна быть пустой.") String category,
+                                      @RequestParam(value = "sort", defaultValue = "az") @NotBlank(message = "Параметр сортировки не должен быть пустым.") String sort,
+                                      @RequestParam(value = "cursor", required = false) String cursor,
+                                      @RequestParam(value = "limit", required = false)
+                                      @Positive(message = "limit должен быть > 0.")
+                                      @Max(value = MAX_PAGE_SIZE, message = "limit должен быть <= " + MAX_PAGE_SIZE + ".") Integer limit,
+                                      @RequestParam(value = "fields", required = false) String fields,
+                                      WebRequest request) {
+        log.info("Received request to GET list of MenuItems for category={}, sorted by={}, cursor={}, limit={}, fields={}",
+                category, sort, cursor, limit, fields);
+        var categoryValue = Category.fromString(category);
+        var sortBy = SortBy.fromString(sort);
+        var fieldSet = fields == null ? null : MenuField.fromString(fields);
+        if (limit == null && cursor == null && fieldSet == null) {
+            return getCachedMenus(categoryValue, sortBy, request);
+        }
+        var etag = catalogVersion.etag(categoryValue);
+        if (etag != null && request.checkNotModified(etag)) {
+            return notModified();
+        }
+        var response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL);
+        if (limit == null && cursor == null) {
+            return response.body(menuService.getMenusFor(categoryValue, sortBy, fieldSet));
+        }
+        var pageSize = limit == null ? MAX_PAGE_SIZE : limit;
+        var page = fieldSet == null
+                ? menuService.getMenusFor(categoryValue, sortBy, cursor, pageSize)
+                : menuService.getMenusFor(categoryValue, sortBy, cursor, pageSize, fieldSet);
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @Operation(
+            summary = "${api.menu-search.summary}",
+            description = "${api.menu-search.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.searchOk}",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = MenuItemDto.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.searchBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping("/search")
+    public List<MenuItemDto> searchMenus(@RequestParam("q")
+                                         @NotBlank(message = "Поисковый запрос не должен быть пустым.")
+                                         @Size(max = 100, message = "Поисковый запрос должен быть не длиннее 100 символов.") String query,
+                                         @RequestParam(value = "category", required = false) String category,
+                                         @RequestParam(value = "sort", required = false) String sort,
+                                         @RequestParam(value = "limit", required = false)
+                                         @Positive(message = "limit должен быть > 0.")
+                                         @Max(value = MAX_PAGE_SIZE, message = "limit должен быть <= " + MAX_PAGE_SIZE + ".") Integer limit) {
+        log.info("Received request to search MenuItems by query={}, category={}, sorted by={}, limit={}", query, category, sort, limit);
+        return menuService.searchMenus(
+                query,
+                category == null ? null : Category.fromString(category),
+                sort == null ? null : SortBy.fromString(sort),
+                limit == null ? DEFAULT_SEARCH_LIMIT : limit
+        );
+    }
+
+    @Operation(
+            summary = "${api.menu-filter.summary}",
+            description = "${api.menu-filter.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.filterOk}",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = MenuItemDto.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.filterBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping("/filter")
+    public List<MenuItemDto> filterMenus(@RequestParam(value = "ingredient", required = false) Set<String> ingredients,
+                                         @RequestParam(value = "excludeIngredient", required = false) Set<String> excludedIngredients,
+                                         @RequestParam(value = "minCalories", required = false)
+                                         @PositiveOrZero(message = "minCalories должен быть >= 0.") Long minCalories,
+                                         @RequestParam(value = "maxCalories", required = false)
+                                         @PositiveOrZero(message = "maxCalories должен быть >= 0.") Long maxCalories,
+                                         @RequestParam(value = "category", required = false) String category,
+                                         @RequestParam(value = "sort", defaultValue = "az") @NotBlank(message = "Параметр сортировки не должен быть пустым.") String sort,
+                                         @RequestParam(value = "limit", required = false)
+                                         @Positive(message = "limit должен быть > 0.")
+                                         @Max(value = MAX_PAGE_SIZE, message = "limit должен быть <= " + MAX_PAGE_SIZE + ".") Integer limit) {
+        log.info("Received request to filter MenuItems by ingredients={}, excluded ingredients={}, calories=[{}, {}], category={}, sorted by={}, limit={}",
+                ingredients, excludedIngredients, minCalories, maxCalories, category, sort, limit);
+        var filter = MenuFilter.builder()
+                .category(category == null ? null : Category.fromString(category))
+                .includedIngredients(ingredients)
+                .excludedIngredients(excludedIngredients)
+                .minCalories(minCalories)
+                .maxCalories(maxCalories)
+                .build();
+        return menuService.filterMenus(filter, SortBy.fromString(sort), limit == null ? MAX_PAGE_SIZE : limit);
+    }
+
+    @Operation(
+            summary = "${api.menu-suggest.summary}",
+            description = "${api.menu-suggest.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.suggestOk}",
+                    content = @Content(
+                            mediaType = MediaType.APPLICATION_JSON_VALUE,
+                            array = @ArraySchema(schema = @Schema(implementation = MenuSuggestion.class))
+                    )
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.suggestBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping("/suggest")
+    public List<MenuSuggestion> suggestMenus(@RequestParam("prefix")
+                                             @NotBlank(message = "Префикс не должен быть пустым.")
+                                             @Size(max = 100, message = "Префикс должен быть не длиннее 100 символов.") String prefix,
+                                             @RequestParam(value = "limit", required = false)
+                                             @Positive(message = "limit должен быть > 0.")
+                                             @Max(value = MAX_SUGGESTIONS, message = "limit должен быть <= " + MAX_SUGGESTIONS + ".") Integer limit) {
+        log.debug("Received request to suggest MenuItems by prefix={}, limit={}", prefix, limit);
+        return menuService.suggestMenus(prefix, limit == null ? DEFAULT_SUGGESTIONS : limit);
+    }
+
+    @Operation(
+            summary = "${api.menu-export.summary}",
+            description = "${api.menu-export.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.exportOk}",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE)
+            )
+    })
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportMenus(HttpServletResponse response) throws IOException {
+        log.info("Received request to export all MenuItems");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        // по умолчанию ObjectWriter сбрасывает поток после каждого значения, то есть отправлял бы отдельный chunk
+        // на каждое блюдо. Без сброса генератор и поток ответа буферизуют вывод и отправляют его блоками
+        // по мере заполнения буферов, а остаток отправляется при закрытии генератора
+        var writer = objectMapper.writerFor(MenuItemDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            menuService.exportMenus(menu -> {
+                try {
+                    writer.writeValue(generator, menu);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Operation(
+            summary = "${api.menu-changes.summary}",
+            description = "${api.menu-changes.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "${api.response.changesOk}"),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "${api.response.changesBadRequest}",
+                    content = @Content(
+                            schema = @Schema(implementation = ProblemDetail.class)
+                    )
+            )
+    })
+    @GetMapping("/changes")
+    public MenuChangesResponse getChanges(@RequestParam(value = "since", required = false) String since,
+                                          @RequestParam(value = "limit", required = false)
+                                          @Positive(message = "limit должен быть > 0.")
+                                          @Max(value = MAX_CHANGES_LIMIT, message = "limit должен быть <= " + MAX_CHANGES_LIMIT + ".") Integer limit) {
+        log.info("Received request to GET MenuItem changes since={}, limit={}", since, limit);
+        return menuService.getChanges(since, limit == null ? MAX_CHANGES_LIMIT : limit);
+    }
+
+    @Operation(
+            summary = "${api.menu-events.summary}",
+            description = "${api.menu-events.description}"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "${api.response.eventsOk}",
+                    content = @Content(
+                            mediaType = MediaType.TEXT_EVENT_STREAM_VALUE,
+                            schema = @Schema(implementation = MenuChangeEvent.class)
+                    )
+            )
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToChanges(@RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        log.info("Received request to subscribe to MenuItem changes, Last-Event-ID={}", lastEventId);
+        return menuChangeFeed.subscribe(lastEventId);
     }
 
     @Operation(
@@ -158,4 +542,104 @@ public class MenuItemController {
         log.info("Received request to GET info for menu with names: {}", request.getMenuNames());
         return menuService.getMenusForOrder(request);
     }
+
+    /**
+     * Полный список категории отдается готовыми байтами из {@link MenuJsonCache}, при поддержке клиентом - сжатыми gzip.
+     * ETag строится по версии категории, под которой построен список; у сжатого и несжатого
+     * представлений ETag различаются, как требуется для строгих ETag. Пока версия категории неизвестна,
+     * ответ отдается без ETag.
+     */
+    private ResponseEntity<byte[]> getCachedMenus(Category category, SortBy sortBy, WebRequest request) {
+        var encoded = menuJsonCache.getMenusFor(category, sortBy);
+        var gzip = acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        var etag = catalogVersion.etag(category, encoded.version());
+        if (etag != null && gzip) {
+            etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+        if (etag != null && request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(CACHE_CONTROL)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        var response = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CACHE_CONTROL)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.gzip());
+        }
+        return response.body(encoded.json());
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            var parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    var param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(param.substring(2)) > 0;
+                        } catch (NumberFormatException e) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Строгий ETag блюда - его версия, например "3". Его возвращают GET /{id} и PATCH /{id}.
+     */
+    private static String versionEtag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Строгий ETag ответа с частью полей блюда - версия и запрошенные поля, например "3-id,name,price".
+     * Он отличается от ETag полного ответа, поэтому не подходит для If-Match при обновлении.
+     */
+    private static String fieldsEtag(long version, Set<MenuField> fields) {
+        var etag = new StringBuilder("\"").append(version).append('-');
+        for (MenuField field : fields) {
+            etag.append(field.getAttribute()).append(',');
+        }
+        etag.setCharAt(etag.length() - 1, '"');
+        return etag.toString();
+    }
+
+    /**
+     * Версия блюда передается в заголовке If-Match как строгий ETag вида "3", "*" соответствует любой версии.
+     * Значение, которое не может быть версией блюда, не совпадает ни с одной версией, поэтому запрос отклоняется с 412.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        var tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException ignored) {
+                // обрабатывается ниже так же, как любое другое несовпадающее значение
+            }
+        }
+        var msg = String.format("Failed to update MenuItem. Reason: If-Match %s does not match any MenuItem version.", ifMatch);
+        throw new MenuServiceException(msg, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    // заголовок ETag в ответ 304 уже записан методом WebRequest.checkNotModified
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(CACHE_CONTROL)
+                .build();
+    }
 }
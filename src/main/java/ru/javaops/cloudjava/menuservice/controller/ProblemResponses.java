@@ -0,0 +1,32 @@
+package ru.javaops.cloudjava.menuservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Instant;
+
+/**
+ * Ответ об ошибке в формате ProblemDetail для фильтров, которые отвечают до передачи запроса контроллеру
+ * и поэтому не проходят через {@link ru.javaops.cloudjava.menuservice.exception.GlobalExceptionHandler}.
+ */
+final class ProblemResponses {
+
+    private ProblemResponses() {
+    }
+
+    static void write(ObjectMapper objectMapper, HttpServletRequest request, HttpServletResponse response,
+                      HttpStatus status, String detail) throws IOException {
+        var pd = ProblemDetail.forStatusAndDetail(status, detail);
+        pd.setProperty("timestamp", Instant.now());
+        pd.setInstance(URI.create(request.getRequestURI()));
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), pd);
+    }
+}
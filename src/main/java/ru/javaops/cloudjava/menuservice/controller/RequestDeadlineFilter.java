@@ -0,0 +1,80 @@
+package ru.javaops.cloudjava.menuservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import java.io.IOException;
+
+/**
+ * Принимает крайний срок запроса из заголовка {@link RequestDeadline#HEADER} для эндпоинтов меню.
+ * Запрос с уже истекшим сроком сразу получает 504, не занимая место в контроле допуска и соединение с БД;
+ * иначе срок действует на время обработки запроса и ограничивает выполнение SQL запросов.
+ */
+@Slf4j
+@Component
+@Order(SecurityProperties.DEFAULT_FILTER_ORDER - 2)
+public class RequestDeadlineFilter extends OncePerRequestFilter {
+
+    private static final String BASE_PATH = "/v1/menu-items";
+
+    private final ObjectMapper objectMapper;
+    private final Counter expiredOnArrival;
+    private final Counter expiredInProcessing;
+
+    public RequestDeadlineFilter(ObjectMapper objectMapper, MeterRegistry registry) {
+        this.objectMapper = objectMapper;
+        this.expiredOnArrival = Counter.builder("menu.deadline.expired")
+                .description("Number of requests whose deadline expired on arrival or during processing")
+                .tag("stage", "arrival")
+                .register(registry);
+        this.expiredInProcessing = Counter.builder("menu.deadline.expired")
+                .description("Number of requests whose deadline expired on arrival or during processing")
+                .tag("stage", "processing")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(BASE_PATH) || request.getHeader(RequestDeadline.HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long remainingMillis;
+        try {
+            remainingMillis = Long.parseLong(request.getHeader(RequestDeadline.HEADER).trim());
+        } catch (NumberFormatException e) {
+            ProblemResponses.write(objectMapper, request, response, HttpStatus.BAD_REQUEST,
+                    "Header " + RequestDeadline.HEADER + " must be the number of remaining milliseconds.");
+            return;
+        }
+        if (remainingMillis <= 0) {
+            expiredOnArrival.increment();
+            log.debug("Rejected {} {}: deadline already expired", request.getMethod(), request.getRequestURI());
+            ProblemResponses.write(objectMapper, request, response, HttpStatus.GATEWAY_TIMEOUT, "Request deadline exceeded.");
+            return;
+        }
+        RequestDeadline.start(remainingMillis);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (RequestDeadline.isExpired()) {
+                expiredInProcessing.increment();
+            }
+            RequestDeadline.clear();
+        }
+    }
+}
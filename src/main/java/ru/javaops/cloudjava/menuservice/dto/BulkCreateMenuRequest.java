@@ -0,0 +1,21 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkCreateMenuRequest {
+    @NotEmpty(message = "Список блюд не должен быть пустым.")
+    @Size(max = 1000, message = "Список блюд должен содержать не более 1000 элементов.")
+    private List<@Valid CreateMenuRequest> items;
+}
@@ -0,0 +1,17 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkCreateMenuResponse {
+    private List<MenuItemDto> created;
+    private List<BulkItemError> failed;
+}
@@ -0,0 +1,18 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Информация о блюде из пакетного запроса, которое не удалось обработать.
+ * index - позиция блюда в списке запроса.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkItemError {
+    private int index;
+    private String name;
+    private String reason;
+}
@@ -0,0 +1,24 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkUpdateMenuRequest {
+    @NotEmpty(message = "Список обновлений не должен быть пустым.")
+    @Size(max = 1000, message = "Список обновлений должен содержать не более 1000 элементов.")
+    private Map<@NotNull @Positive(message = "id должен быть > 0.") Long,
+            @NotNull(message = "Параметры обновления не должны быть null.") @Valid UpdateMenuRequest> items;
+}
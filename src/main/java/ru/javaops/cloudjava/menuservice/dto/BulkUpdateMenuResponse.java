@@ -0,0 +1,20 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkUpdateMenuResponse {
+    private List<MenuItemDto> updated;
+    // идентификаторы найденных блюд, для которых в запросе не задан ни один изменяемый атрибут
+    private List<Long> unchanged;
+    // идентификаторы из запроса, для которых блюда не найдены
+    private List<Long> notFound;
+}
@@ -0,0 +1,53 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в журнале изменений меню: пара (номер транзакции изменения, id) последнего полученного изменения.
+ * Клиенту передается в виде непрозрачной строки.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class ChangeCursor implements Comparable<ChangeCursor> {
+
+    public static final ChangeCursor START = new ChangeCursor(0, 0);
+    private static final String SEPARATOR = "\n";
+
+    private final long changeXid;
+    private final long id;
+
+    public String encode() {
+        var raw = changeXid + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ChangeCursor decode(String value) {
+        try {
+            var raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            var parts = raw.split(SEPARATOR, 2);
+            if (parts.length == 2) {
+                return new ChangeCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            }
+        } catch (RuntimeException e) {
+            // некорректный токен обрабатываем ниже одинаково для всех причин
+        }
+        var msg = "Invalid changes token %s".formatted(value);
+        throw new MenuServiceException(msg, HttpStatus.BAD_REQUEST);
+    }
+
+    @Override
+    public int compareTo(ChangeCursor other) {
+        int result = Long.compare(changeXid, other.changeXid);
+        return result != 0 ? result : Long.compare(id, other.id);
+    }
+}
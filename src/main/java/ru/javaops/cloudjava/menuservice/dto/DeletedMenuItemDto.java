@@ -0,0 +1,19 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DeletedMenuItemDto {
+    private Long id;
+    private Category category;
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,21 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+
+/**
+ * Событие ленты изменений меню: тип изменения, версия каталога после изменения и состояние блюда
+ * (для удаленного блюда - последнее известное состояние).
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MenuChangeEvent {
+    private MenuItemChangedEvent.Type type;
+    private long catalogVersion;
+    private MenuItemDto item;
+}
@@ -0,0 +1,24 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Изменения меню с момента прошлой синхронизации: созданные и измененные блюда в их текущем состоянии
+ * и удаленные блюда. Токен next передается в следующем запросе; hasMore равен true, если изменения
+ * не поместились в ответ и их нужно запросить сразу.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class MenuChangesResponse {
+    private List<MenuItemDto> items;
+    private List<DeletedMenuItemDto> deleted;
+    private String next;
+    private boolean hasMore;
+}
@@ -0,0 +1,75 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.IngredientCollection;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Поля блюда, которые можно запросить параметром fields. Название поля совпадает с атрибутом MenuItem
+ * и свойством {@link MenuItemDto}.
+ */
+public enum MenuField {
+    ID("id", (dto, value) -> dto.setId((Long) value)),
+    NAME("name", (dto, value) -> dto.setName((String) value)),
+    DESCRIPTION("description", (dto, value) -> dto.setDescription((String) value)),
+    PRICE("price", (dto, value) -> dto.setPrice((BigDecimal) value)),
+    CATEGORY("category", (dto, value) -> dto.setCategory((Category) value)),
+    TIME_TO_COOK("timeToCook", (dto, value) -> dto.setTimeToCook((Long) value)),
+    WEIGHT("weight", (dto, value) -> dto.setWeight((Double) value)),
+    IMAGE_URL("imageUrl", (dto, value) -> dto.setImageUrl((String) value)),
+    UPDATED_AT("updatedAt", (dto, value) -> dto.setUpdatedAt((LocalDateTime) value)),
+    CREATED_AT("createdAt", (dto, value) -> dto.setCreatedAt((LocalDateTime) value)),
+    INGREDIENT_COLLECTION("ingredientCollection", (dto, value) -> dto.setIngredientCollection((IngredientCollection) value)),
+    VERSION("version", (dto, value) -> dto.setVersion((Long) value));
+
+    private final String attribute;
+    private final BiConsumer<MenuItemDto, Object> setter;
+
+    MenuField(String attribute, BiConsumer<MenuItemDto, Object> setter) {
+        this.attribute = attribute;
+        this.setter = setter;
+    }
+
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * Записывает прочитанное из БД значение поля в DTO.
+     */
+    public void set(MenuItemDto dto, Object value) {
+        setter.accept(dto, value);
+    }
+
+    /**
+     * Разбирает список полей через запятую, например {@code name,price,imageUrl}. id включается всегда.
+     */
+    public static Set<MenuField> fromString(String fields) {
+        Set<MenuField> result = EnumSet.of(ID);
+        for (String name : fields.split(",")) {
+            var trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            result.add(fromAttribute(trimmed));
+        }
+        return result;
+    }
+
+    private static MenuField fromAttribute(String name) {
+        for (MenuField field : values()) {
+            if (field.attribute.equals(name)) {
+                return field;
+            }
+        }
+        var msg = "Failed to create MenuField from string: %s".formatted(name);
+        throw new MenuServiceException(msg, HttpStatus.BAD_REQUEST);
+    }
+}
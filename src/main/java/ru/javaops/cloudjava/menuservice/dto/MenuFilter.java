@@ -0,0 +1,22 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.Builder;
+import lombok.Data;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.util.Set;
+
+/**
+ * Фильтр блюд по составу и калорийности. Незаданные (null или пустые) условия не применяются.
+ */
+@Data
+@Builder
+public class MenuFilter {
+    private Category category;
+    // блюдо должно содержать все перечисленные ингредиенты
+    private Set<String> includedIngredients;
+    // блюдо не должно содержать ни одного из перечисленных ингредиентов (например, аллергенов)
+    private Set<String> excludedIngredients;
+    private Long minCalories;
+    private Long maxCalories;
+}
@@ -1,8 +1,10 @@
 package ru.javaops.cloudjava.menuservice.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 import ru.javaops.cloudjava.menuservice.storage.model.IngredientCollection;
 
@@ -11,6 +13,8 @@ import java.time.LocalDateTime;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class MenuItemDto {
     private Long id;
@@ -18,10 +22,12 @@ public class MenuItemDto {
     private String description;
     private BigDecimal price;
     private Category category;
-    private long timeToCook;
-    private double weight;
+    // обертки, чтобы поля, не запрошенные параметром fields, не попадали в ответ
+    private Long timeToCook;
+    private Double weight;
     private String imageUrl;
     private LocalDateTime updatedAt;
     private LocalDateTime createdAt;
     private IngredientCollection ingredientCollection;
+    private Long version;
 }
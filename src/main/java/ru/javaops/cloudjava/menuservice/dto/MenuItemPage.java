@@ -0,0 +1,16 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Страница списка блюд категории. nextCursor равен null, если страница последняя.
+ */
+@Data
+@AllArgsConstructor
+public class MenuItemPage {
+    private List<MenuItemDto> items;
+    private String nextCursor;
+}
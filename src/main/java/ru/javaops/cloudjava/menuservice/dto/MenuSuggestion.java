@@ -0,0 +1,16 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Подсказка для строки поиска: только id и название блюда, чтобы ответ на каждое нажатие клавиши был минимальным.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MenuSuggestion {
+    private Long id;
+    private String name;
+}
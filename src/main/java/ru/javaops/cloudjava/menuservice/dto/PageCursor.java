@@ -0,0 +1,49 @@
+package ru.javaops.cloudjava.menuservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Курсор для постраничного вывода списка блюд: пара (ключ сортировки, id)
+ * последнего блюда на предыдущей странице. Клиенту передается в виде непрозрачной строки.
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class PageCursor {
+
+    private static final String SEPARATOR = "\n";
+
+    private final SortBy sortBy;
+    private final String key;
+    private final Long id;
+
+    public String encode() {
+        // ключ идет последним, так как только он может содержать произвольные символы
+        var raw = sortBy.name() + SEPARATOR + id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String value, SortBy sortBy) {
+        try {
+            var raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            var parts = raw.split(SEPARATOR, 3);
+            if (parts.length == 3 && sortBy.name().equals(parts[0])) {
+                sortBy.validateKey(parts[2]);
+                return new PageCursor(sortBy, parts[2], Long.parseLong(parts[1]));
+            }
+        } catch (RuntimeException e) {
+            // некорректный курсор обрабатываем ниже одинаково для всех причин
+        }
+        var msg = "Invalid cursor %s for sort %s".formatted(value, sortBy);
+        throw new MenuServiceException(msg, HttpStatus.BAD_REQUEST);
+    }
+}
@@ -2,52 +2,125 @@ package ru.javaops.cloudjava.menuservice.dto;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
 import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import org.springframework.http.HttpStatus;
 import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem_;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
 public enum SortBy {
-    AZ {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.asc(root.get(MenuItem_.name));
-        }
-    },
-    ZA {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.desc(root.get(MenuItem_.name));
-        }
-    },
-    PRICE_ASC {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.asc(root.get(MenuItem_.price));
-        }
-    },
-    PRICE_DESC {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.desc(root.get(MenuItem_.price));
-        }
-    },
-    DATE_ASC {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.asc(root.get(MenuItem_.createdAt));
+    AZ(Key.NAME, true),
+    ZA(Key.NAME, false),
+    PRICE_ASC(Key.PRICE, true),
+    PRICE_DESC(Key.PRICE, false),
+    DATE_ASC(Key.CREATED_AT, true),
+    DATE_DESC(Key.CREATED_AT, false);
+
+    private final Key key;
+    private final boolean ascending;
+
+    SortBy(Key key, boolean ascending) {
+        this.key = key;
+        this.ascending = ascending;
+    }
+
+    public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
+        return order(cb, key.path(root));
+    }
+
+    /**
+     * Порядок для постраничного вывода: ключ сортировки и id в том же направлении,
+     * чтобы порядок был однозначным даже при совпадающих ключах.
+     */
+    public List<Order> getKeysetOrder(CriteriaBuilder cb, Root<MenuItem> root) {
+        return List.of(order(cb, key.path(root)), order(cb, root.get(MenuItem_.id)));
+    }
+
+    /**
+     * Условие "строка находится после курсора" в порядке {@link #getKeysetOrder}.
+     * Записано как key >= k AND (key > k OR id > lastId), чтобы первое условие
+     * задавало границу диапазона при сканировании составного индекса (category, key, id).
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Predicate getKeysetPredicate(CriteriaBuilder cb, Root<MenuItem> root, PageCursor cursor) {
+        Expression path = key.path(root);
+        Comparable value = key.parse(cursor.getKey());
+        var id = root.get(MenuItem_.id);
+        if (ascending) {
+            return cb.and(
+                    cb.greaterThanOrEqualTo(path, value),
+                    cb.or(cb.greaterThan(path, value), cb.greaterThan(id, cursor.getId()))
+            );
         }
-    },
-    DATE_DESC {
-        @Override
-        public Order getOrder(CriteriaBuilder cb, Root<MenuItem> root) {
-            return cb.desc(root.get(MenuItem_.createdAt));
+        return cb.and(
+                cb.lessThanOrEqualTo(path, value),
+                cb.or(cb.lessThan(path, value), cb.lessThan(id, cursor.getId()))
+        );
+    }
+
+    /**
+     * Порядок {@link #getKeysetOrder} в виде SQL выражения ORDER BY для нативных запросов
+     * к таблице menu_items с псевдонимом alias.
+     */
+    public String getSqlOrder(String alias) {
+        var direction = ascending ? " ASC" : " DESC";
+        return alias + "." + key.column() + direction + ", " + alias + ".id" + direction;
+    }
+
+    /**
+     * Упорядочивает блюда в памяти так же, как {@link #getKeysetOrder}. Названия сравниваются в collation
+     * базы данных, которую нельзя точно воспроизвести в Java, поэтому блюда передаются в порядке {@link #AZ},
+     * полученном из БД: порядок по названию берется из него, остальные ключи сравниваются в памяти.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public List<MenuItemDto> sort(List<MenuItemDto> itemsByName) {
+        if (key == Key.NAME) {
+            // названия уникальны, поэтому id не влияет на порядок
+            List<MenuItemDto> sorted = new ArrayList<>(itemsByName);
+            if (!ascending) {
+                Collections.reverse(sorted);
+            }
+            return Collections.unmodifiableList(sorted);
         }
-    };
+        Comparator<MenuItemDto> comparator = Comparator.comparing(dto -> (Comparable) key.valueOf(dto));
+        comparator = comparator.thenComparing(MenuItemDto::getId);
+        return itemsByName.stream().sorted(ascending ? comparator : comparator.reversed()).toList();
+    }
+
+    /**
+     * Курсор, указывающий на позицию сразу после переданного блюда.
+     */
+    public PageCursor cursorAfter(MenuItemDto dto) {
+        return new PageCursor(this, key.format(key.valueOf(dto)), dto.getId());
+    }
+
+    /**
+     * Поле блюда, по которому выполняется сортировка.
+     */
+    public MenuField getField() {
+        return key.field();
+    }
+
+    /**
+     * Проверяет, что значение ключа из курсора может быть использовано для этой сортировки.
+     */
+    void validateKey(String value) {
+        key.parse(value);
+    }
 
-    public abstract Order getOrder(CriteriaBuilder cb, Root<MenuItem> root);
+    private <T> Order order(CriteriaBuilder cb, Expression<T> expression) {
+        return ascending ? cb.asc(expression) : cb.desc(expression);
+    }
 
     @JsonCreator
     public static SortBy fromString(String str) {
@@ -58,4 +131,90 @@ public enum SortBy {
             throw new MenuServiceException(msg, HttpStatus.BAD_REQUEST);
         }
     }
+
+    /**
+     * Атрибут, по которому выполняется сортировка. Атрибуты метамодели MenuItem_ заполняются
+     * Hibernate при старте, поэтому обращаемся к ним только внутри методов.
+     */
+    private enum Key {
+        NAME("name", MenuField.NAME) {
+            @Override
+            Expression<String> path(Root<MenuItem> root) {
+                return root.get(MenuItem_.name);
+            }
+
+            @Override
+            Comparable<?> valueOf(MenuItemDto dto) {
+                return dto.getName();
+            }
+
+            @Override
+            Comparable<?> parse(String value) {
+                return value;
+            }
+        },
+        PRICE("price", MenuField.PRICE) {
+            @Override
+            Expression<BigDecimal> path(Root<MenuItem> root) {
+                return root.get(MenuItem_.price);
+            }
+
+            @Override
+            Comparable<?> valueOf(MenuItemDto dto) {
+                return dto.getPrice();
+            }
+
+            @Override
+            Comparable<?> parse(String value) {
+                return new BigDecimal(value);
+            }
+
+            @Override
+            String format(Comparable<?> value) {
+                return ((BigDecimal) value).toPlainString();
+            }
+        },
+        CREATED_AT("created_at", MenuField.CREATED_AT) {
+            @Override
+            Expression<LocalDateTime> path(Root<MenuItem> root) {
+                return root.get(MenuItem_.createdAt);
+            }
+
+            @Override
+            Comparable<?> valueOf(MenuItemDto dto) {
+                return dto.getCreatedAt();
+            }
+
+            @Override
+            Comparable<?> parse(String value) {
+                return LocalDateTime.parse(value);
+            }
+        };
+
+        private final String column;
+        private final MenuField field;
+
+        Key(String column, MenuField field) {
+            this.column = column;
+            this.field = field;
+        }
+
+        String column() {
+            return column;
+        }
+
+        MenuField field() {
+            return field;
+        }
+
+        abstract Expression<?> path(Root<MenuItem> root);
+
+        abstract Comparable<?> valueOf(MenuItemDto dto);
+
+        abstract Comparable<?> parse(String value);
+
+        String format(Comparable<?> value) {
+            return value.toString();
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package ru.javaops.cloudjava.menuservice.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.*;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -29,6 +30,16 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return createProblemDetail(ex.getMessage(), ex.getStatus(), request);
     }
 
+    /**
+     * Обработчик срабатывает, когда SQL запрос не уложился в крайний срок запроса и был отменен
+     * или не был отправлен в БД, потому что срок уже истек.
+     */
+    @ExceptionHandler({QueryTimeoutException.class, jakarta.persistence.QueryTimeoutException.class})
+    public ProblemDetail handleQueryTimeout(RuntimeException ex, WebRequest request) {
+        log.warn("Intercepted query timeout. Message: {}", ex.getMessage());
+        return createProblemDetail("Request deadline exceeded.", HttpStatus.GATEWAY_TIMEOUT, request);
+    }
+
     /**
      * Обработчик срабатывает, когда не удается прочесть тело входящего запроса.
      */
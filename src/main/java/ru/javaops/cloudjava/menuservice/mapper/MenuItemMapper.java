@@ -4,8 +4,10 @@ import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.ReportingPolicy;
 import ru.javaops.cloudjava.menuservice.dto.CreateMenuRequest;
+import ru.javaops.cloudjava.menuservice.dto.DeletedMenuItemDto;
 import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemTombstone;
 
 import java.util.List;
 
@@ -18,12 +20,16 @@ public interface MenuItemMapper {
 
     MenuItemDto toDto(MenuItem domain);
 
-    // в запросе на создание блюда не будет полей id, createdAt, updatedAt, они
-    // проставляются hibernate автоматически, поэтому говорим MapStruct игнорировать их
+    // в запросе на создание блюда не будет полей id, createdAt, updatedAt, version, changeXid, они
+    // проставляются hibernate и БД автоматически, поэтому говорим MapStruct игнорировать их
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "createdAt", ignore = true)
     @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "changeXid", ignore = true)
     MenuItem toDomain(CreateMenuRequest dto);
 
     List<MenuItemDto> toDtoList(List<MenuItem> domains);
+
+    DeletedMenuItemDto toDeletedDto(MenuItemTombstone tombstone);
 }
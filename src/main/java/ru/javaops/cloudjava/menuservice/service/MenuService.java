@@ -4,18 +4,70 @@ import ru.javaops.cloudjava.menuservice.dto.*;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface MenuService {
 
     MenuItemDto createMenuItem(CreateMenuRequest dto);
 
+    /**
+     * Создает блюдо; повторный вызов тем же клиентом с тем же idempotencyKey возвращает результат первого вызова.
+     */
+    MenuItemDto createMenuItem(CreateMenuRequest dto, String client, String idempotencyKey);
+
+    BulkCreateMenuResponse createMenuItems(BulkCreateMenuRequest request);
+
     void deleteMenuItem(Long id);
 
     MenuItemDto updateMenuItem(Long id, UpdateMenuRequest update);
 
+    /**
+     * Обновляет блюдо, только если его текущая версия равна expectedVersion (null - без проверки версии).
+     */
+    MenuItemDto updateMenuItem(Long id, UpdateMenuRequest update, Long expectedVersion);
+
+    BulkUpdateMenuResponse updateMenuItems(BulkUpdateMenuRequest request);
+
     MenuItemDto getMenu(Long id);
 
     List<MenuItemDto> getMenusFor(Category category, SortBy sortBy);
 
+    MenuItemPage getMenusFor(Category category, SortBy sortBy, String cursor, int limit);
+
+    /**
+     * Варианты чтения блюд, заполняющие только поля fields (sparse fieldsets). Читают БД напрямую, минуя кэши.
+     * Для постраничного вывода в ответ также попадает поле сортировки: оно нужно для курсора следующей страницы.
+     */
+    MenuItemDto getMenu(Long id, Set<MenuField> fields);
+
+    List<MenuItemDto> getMenusFor(Category category, SortBy sortBy, Set<MenuField> fields);
+
+    MenuItemPage getMenusFor(Category category, SortBy sortBy, String cursor, int limit, Set<MenuField> fields);
+
     OrderMenuResponse getMenusForOrder(OrderMenuRequest request);
+
+    void exportMenus(Consumer<MenuItemDto> consumer);
+
+    /**
+     * Ищет блюда по названию и описанию с учетом опечаток. category и sortBy необязательны,
+     * без sortBy результаты упорядочены по релевантности.
+     */
+    List<MenuItemDto> searchMenus(String query, Category category, SortBy sortBy, int limit);
+
+    /**
+     * Возвращает не более limit блюд, удовлетворяющих фильтру по составу и калорийности, в порядке sortBy.
+     */
+    List<MenuItemDto> filterMenus(MenuFilter filter, SortBy sortBy, int limit);
+
+    /**
+     * Возвращает не более limit подсказок - блюд, слово в названии которых начинается с prefix.
+     */
+    List<MenuSuggestion> suggestMenus(String prefix, int limit);
+
+    /**
+     * Возвращает не более limit изменений меню (созданные, измененные и удаленные блюда),
+     * сделанных после токена since, полученного в предыдущем ответе; null - все блюда с начала.
+     */
+    MenuChangesResponse getChanges(String since, int limit);
 }
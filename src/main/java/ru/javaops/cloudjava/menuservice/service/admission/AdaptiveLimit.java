@@ -0,0 +1,88 @@
+package ru.javaops.cloudjava.menuservice.service.admission;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Адаптивный лимит одновременных запросов (AIMD по задержке): если запрос выполнялся дольше целевой задержки,
+ * лимит уменьшается в {@value #BACKOFF_RATIO} раза, иначе, если лимит использовался хотя бы наполовину,
+ * увеличивается примерно на 1 за каждые limit запросов. Лимит остается в пределах [min, max].
+ * Лимит уменьшается не чаще раза за окно выборки: медленные запросы, начатые до последнего уменьшения,
+ * были допущены еще при старом лимите, поэтому всплеск таких запросов уменьшает лимит один раз, а не по
+ * разу на каждый.
+ */
+class AdaptiveLimit {
+
+    static final double BACKOFF_RATIO = 0.9;
+
+    private final int min;
+    private final int max;
+    private final long latencyTargetNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long lastDecreaseAt;
+
+    AdaptiveLimit(int initial, int min, int max, Duration latencyTarget) {
+        this.min = min;
+        this.max = max;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.limit = Math.max(min, Math.min(max, initial));
+        this.lastDecreaseAt = System.nanoTime();
+    }
+
+    /**
+     * Лимит, который не меняется: освобождать место нужно методом {@link #release()}.
+     */
+    static AdaptiveLimit fixed(int limit) {
+        return new AdaptiveLimit(limit, limit, limit, Duration.ZERO);
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Освобождает место и учитывает длительность запроса.
+     *
+     * @param startedAt  момент допуска запроса по {@link System#nanoTime()}
+     * @param finishedAt момент завершения запроса по {@link System#nanoTime()}
+     */
+    void release(long startedAt, long finishedAt) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        onSample(startedAt, finishedAt, inFlightBefore);
+    }
+
+    /**
+     * Освобождает место, не учитывая длительность запроса.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void onSample(long startedAt, long finishedAt, int inFlightBefore) {
+        if (finishedAt - startedAt > latencyTargetNanos) {
+            if (startedAt - lastDecreaseAt >= 0) {
+                limit = Math.max(min, limit * BACKOFF_RATIO);
+                lastDecreaseAt = finishedAt;
+            }
+        } else if (inFlightBefore * 2 >= limit) {
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.javaops.cloudjava.menuservice.service.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import ru.javaops.cloudjava.menuservice.config.AdmissionProperties;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Контроль допуска запросов. У каждого класса запросов {@link TrafficClass} свой адаптивный лимит
+ * одновременных запросов (bulkhead), поэтому всплеск просмотра каталога не занимает потоки и соединения,
+ * нужные запросам цен для заказа. Кроме того, класс может занимать только свою долю общего лимита:
+ * при общей перегрузке сначала отклоняются запросы с меньшей долей. Лимит класса, длительность запросов которого
+ * не отражает нагрузку ({@link TrafficClass#isAdaptive()}), фиксирован.
+ * Запрос сверх лимита сразу отклоняется, а не ждет в очереди.
+ */
+public class AdmissionController {
+
+    private final int totalLimit;
+    private final AtomicInteger totalInFlight = new AtomicInteger();
+    private final Map<TrafficClass, ClassState> classes;
+
+    public AdmissionController(AdmissionProperties properties, MeterRegistry registry) {
+        this.totalLimit = properties.totalLimit();
+        Map<TrafficClass, ClassState> classes = new EnumMap<>(TrafficClass.class);
+        for (TrafficClass trafficClass : TrafficClass.values()) {
+            var limits = properties.classes().get(trafficClass);
+            if (limits == null) {
+                throw new IllegalArgumentException("Admission limits are not configured for traffic class " + trafficClass);
+            }
+            classes.put(trafficClass, new ClassState(trafficClass, limits, totalLimit, registry));
+        }
+        this.classes = Collections.unmodifiableMap(classes);
+        Gauge.builder("menu.admission.inflight.total", totalInFlight, AtomicInteger::get)
+                .description("Number of admitted requests in flight across all traffic classes")
+                .register(registry);
+    }
+
+    /**
+     * @return разрешение, которое нужно вернуть по завершении запроса, или null, если запрос нужно отклонить
+     */
+    public Permit tryAcquire(TrafficClass trafficClass) {
+        var state = classes.get(trafficClass);
+        if (!acquireTotal(state.totalCap)) {
+            state.rejected.increment();
+            return null;
+        }
+        if (!state.limit.tryAcquire()) {
+            totalInFlight.decrementAndGet();
+            state.rejected.increment();
+            return null;
+        }
+        state.admitted.increment();
+        return new Permit(state, System.nanoTime());
+    }
+
+    int limit(TrafficClass trafficClass) {
+        return classes.get(trafficClass).limit.limit();
+    }
+
+    private boolean acquireTotal(int cap) {
+        while (true) {
+            int current = totalInFlight.get();
+            if (current >= cap) {
+                return false;
+            }
+            if (totalInFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public final class Permit {
+        private final ClassState state;
+        private final long startedAt;
+        private boolean released;
+
+        private Permit(ClassState state, long startedAt) {
+            this.state = state;
+            this.startedAt = startedAt;
+        }
+
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            totalInFlight.decrementAndGet();
+            if (state.adaptive) {
+                state.limit.release(startedAt, System.nanoTime());
+            } else {
+                state.limit.release();
+            }
+        }
+    }
+
+    private static final class ClassState {
+        private final boolean adaptive;
+        private final AdaptiveLimit limit;
+        private final int totalCap;
+        private final Counter admitted;
+        private final Counter rejected;
+
+        private ClassState(TrafficClass trafficClass, AdmissionProperties.ClassLimits limits, int totalLimit, MeterRegistry registry) {
+            this.adaptive = trafficClass.isAdaptive();
+            this.limit = adaptive
+                    ? new AdaptiveLimit(limits.initialLimit(), limits.minLimit(), limits.maxLimit(), limits.latencyTarget())
+                    : AdaptiveLimit.fixed(limits.initialLimit());
+            this.totalCap = (int) Math.ceil(totalLimit * limits.totalShare());
+            var tag = trafficClass.name().toLowerCase();
+            this.admitted = Counter.builder("menu.admission.requests")
+                    .description("Number of requests admitted or rejected by admission control")
+                    .tag("class", tag)
+                    .tag("result", "admitted")
+                    .register(registry);
+            this.rejected = Counter.builder("menu.admission.requests")
+                    .description("Number of requests admitted or rejected by admission control")
+                    .tag("class", tag)
+                    .tag("result", "rejected")
+                    .register(registry);
+            Gauge.builder("menu.admission.limit", limit, AdaptiveLimit::limit)
+                    .description("Current adaptive concurrency limit of the traffic class")
+                    .tag("class", tag)
+                    .register(registry);
+            Gauge.builder("menu.admission.inflight", limit, AdaptiveLimit::inFlight)
+                    .description("Number of admitted requests of the traffic class in flight")
+                    .tag("class", tag)
+                    .register(registry);
+        }
+    }
+}
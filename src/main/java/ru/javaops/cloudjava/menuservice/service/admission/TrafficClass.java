@@ -0,0 +1,59 @@
+package ru.javaops.cloudjava.menuservice.service.admission;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * Классы запросов с отдельными лимитами одновременных запросов. Порядок констант - приоритет:
+ * при общей перегрузке первым отклоняется просмотр каталога, последним - запрос цен для заказа.
+ */
+public enum TrafficClass {
+    // POST /menu-info: запрос цен при оформлении заказа
+    ORDER(true),
+    // создание, изменение и удаление блюд
+    ADMIN(true),
+    // чтение каталога
+    BROWSE(true),
+    // GET /export: потоковая выгрузка меню. Ее длительность зависит от размера меню и скорости клиента,
+    // а не от нагрузки на сервис, поэтому лимит класса фиксированный
+    EXPORT(false);
+
+    private static final String BASE_PATH = "/v1/menu-items";
+
+    private final boolean adaptive;
+
+    TrafficClass(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Меняется ли лимит класса по длительности запросов. Для класса с фиксированным лимитом
+     * используются только initial-limit и total-share.
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Класс запроса или null, если запрос не проходит контроль допуска: служебные адреса, а также лента изменений -
+     * ответ SSE отправляется асинхронно и не занимает поток запроса.
+     */
+    public static TrafficClass classify(String method, String path) {
+        if (!path.startsWith(BASE_PATH)) {
+            return null;
+        }
+        var subPath = path.substring(BASE_PATH.length());
+        if (HttpMethod.GET.matches(method)) {
+            if (subPath.equals("/events")) {
+                return null;
+            }
+            return subPath.equals("/export") ? EXPORT : BROWSE;
+        }
+        if (HttpMethod.POST.matches(method) && subPath.equals("/menu-info")) {
+            return ORDER;
+        }
+        if (HttpMethod.POST.matches(method) || HttpMethod.PATCH.matches(method) || HttpMethod.DELETE.matches(method)) {
+            return ADMIN;
+        }
+        return null;
+    }
+}
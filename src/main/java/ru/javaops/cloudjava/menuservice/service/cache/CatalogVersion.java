@@ -0,0 +1,171 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Версии каталога: для каждой категории и общая.
+ * <p>
+ * Версия категории хранится в БД (таблица menu_category_versions) и увеличивается триггером при любом изменении
+ * блюд категории, поэтому у всех экземпляров сервиса и после перезапуска одним данным соответствует одна версия,
+ * и ETag списков категории совпадают. Локально хранится последняя известная версия: она читается из БД при запуске
+ * и при пересинхронизации, а затем берется из событий об изменениях - своих и полученных от других экземпляров, -
+ * поэтому 304 Not Modified отдается без обращения к БД. Пока версия категории неизвестна ({@link #UNKNOWN}),
+ * ETag для нее не выдается.
+ * <p>
+ * Общая версия локальна для экземпляра: она увеличивается после коммита любого изменения и нумерует события
+ * ленты изменений вместе с эпохой запуска.
+ */
+@Slf4j
+@Component
+public class CatalogVersion {
+
+    public static final long UNKNOWN = -1;
+
+    private final MenuItemRepository repository;
+    private final ApplicationEventPublisher eventPublisher;
+    // отличает версии разных экземпляров сервиса и разных запусков одного экземпляра
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong global = new AtomicLong();
+    private final Map<Category, AtomicLong> categories;
+
+    public CatalogVersion(MenuItemRepository repository, ApplicationEventPublisher eventPublisher) {
+        this.repository = repository;
+        this.eventPublisher = eventPublisher;
+        Map<Category, AtomicLong> categories = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            categories.put(category, new AtomicLong(UNKNOWN));
+        }
+        this.categories = Collections.unmodifiableMap(categories);
+    }
+
+    @PostConstruct
+    void load() {
+        apply(readCategoryVersions());
+    }
+
+    /**
+     * Идентификатор запуска экземпляра: общие версии с разными эпохами несравнимы.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    public long current() {
+        return global.get();
+    }
+
+    /**
+     * Последняя известная версия категории или {@link #UNKNOWN}.
+     */
+    public long current(Category category) {
+        return categories.get(category).get();
+    }
+
+    /**
+     * Строгий ETag для данных одной категории или null, если версия категории неизвестна.
+     */
+    public String etag(Category category) {
+        return etag(category, current(category));
+    }
+
+    /**
+     * Строгий ETag для данных категории, построенных под указанной версией категории,
+     * или null, если версия неизвестна.
+     */
+    public String etag(Category category, long version) {
+        if (version == UNKNOWN) {
+            return null;
+        }
+        return "\"" + category.name().toLowerCase() + "." + version + "\"";
+    }
+
+    /**
+     * Повторяет пересинхронизацию, пока версия какой-либо категории неизвестна, например
+     * если БД была недоступна при запуске.
+     */
+    @Scheduled(fixedDelayString = "${menu.catalog-version.retry-interval-ms:5000}")
+    public void retryUnknown() {
+        if (categories.values().stream().anyMatch(version -> version.get() == UNKNOWN)) {
+            eventPublisher.publishEvent(new MenuResyncEvent("catalog version unknown"));
+        }
+    }
+
+    // версии читаются до сброса кэшей, а устанавливаются после: данные, загруженные в кэши после сброса,
+    // не старше прочитанных версий
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void beforeResync(MenuResyncEvent event) {
+        event.assignCategoryVersions(readCategoryVersions());
+    }
+
+    @Order(MenuItemChangedEvent.VERSION_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        apply(event.getCategoryVersions());
+        global.incrementAndGet();
+    }
+
+    /**
+     * Версия читается в транзакции изменения, после записи: строка категории заблокирована до коммита,
+     * поэтому это именно та версия, которую получит изменение. Выполняется до отправки уведомления
+     * другим экземплярам, чтобы версия попала в него.
+     */
+    @Order(MenuItemChangedEvent.VERSION_ORDER)
+    @EventListener(condition = "!#event.remote")
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void assignCategoryVersion(MenuItemChangedEvent event) {
+        event.assignCategoryVersion(repository.getCategoryVersion(event.getItem().getCategory()));
+    }
+
+    @Order(MenuItemChangedEvent.VERSION_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        long version = event.getCategoryVersion();
+        // изменения применяются не в порядке коммита, поэтому версия не уменьшается. Если версия изменения
+        // неизвестна (уведомление от экземпляра предыдущей версии), категория ждет пересинхронизации
+        categories.get(event.getItem().getCategory())
+                .updateAndGet(current -> version <= 0 || current == UNKNOWN ? UNKNOWN : Math.max(current, version));
+        // версия, полученная именно этим изменением: current() к моменту уведомления ленты
+        // может уже учитывать изменения, закоммиченные параллельно
+        event.assignCatalogVersion(global.incrementAndGet());
+    }
+
+    private Map<Category, Long> readCategoryVersions() {
+        try {
+            return repository.getCategoryVersions();
+        } catch (RuntimeException e) {
+            log.warn("Failed to read catalog versions, ETags are disabled until the next resync. Reason: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void apply(Map<Category, Long> versions) {
+        categories.forEach((category, current) -> {
+            if (versions == null) {
+                current.set(UNKNOWN);
+            } else {
+                long version = versions.getOrDefault(category, 0L);
+                current.updateAndGet(known -> Math.max(known, version));
+            }
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок блюд одной категории, в котором заранее построены
+ * представления для всех вариантов сортировки {@link SortBy}.
+ * DTO разделяются между всеми читателями снимка, поэтому их нельзя модифицировать.
+ */
+final class CategorySnapshot {
+
+    private final Map<SortBy, List<MenuItemDto>> views;
+
+    private CategorySnapshot(Map<SortBy, List<MenuItemDto>> views) {
+        this.views = views;
+    }
+
+    /**
+     * @param itemsByName блюда категории в порядке {@link SortBy#AZ}, полученном из БД
+     */
+    static CategorySnapshot of(List<MenuItemDto> itemsByName) {
+        Map<SortBy, List<MenuItemDto>> views = new EnumMap<>(SortBy.class);
+        for (SortBy sortBy : SortBy.values()) {
+            views.put(sortBy, sortBy.sort(itemsByName));
+        }
+        return new CategorySnapshot(Collections.unmodifiableMap(views));
+    }
+
+    List<MenuItemDto> get(SortBy sortBy) {
+        return views.get(sortBy);
+    }
+
+    int size() {
+        return views.get(SortBy.AZ).size();
+    }
+}
@@ -0,0 +1,69 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Загрузка блюда по id с объединением одновременных запросов одного блюда в один запрос к БД
+ * (см. {@link SingleFlight}). Внутри транзакции блюдо загружается без объединения,
+ * чтобы чтение видело изменения своей транзакции.
+ * Если БД недоступна, блюдо берется из последних снимков категорий {@link MenuSnapshotCache}.
+ */
+@Component
+public class MenuItemLoader {
+
+    private final MenuItemRepository repository;
+    private final MenuItemMapper mapper;
+    private final MenuSnapshotCache snapshotCache;
+    private final DatabaseGuard guard;
+    private final SingleFlight<Long, Optional<MenuItemDto>> flights;
+
+    public MenuItemLoader(MenuItemRepository repository,
+                          MenuItemMapper mapper,
+                          MenuSnapshotCache snapshotCache,
+                          DatabaseGuard guard,
+                          @Value("${menu.deadline.shared-load-timeout:10s}") Duration loadTimeout,
+                          MeterRegistry registry) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.snapshotCache = snapshotCache;
+        this.guard = guard;
+        this.flights = new SingleFlight<>("menu-item", loadTimeout, registry);
+    }
+
+    public Optional<MenuItemDto> findMenu(Long id) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return load(id);
+        }
+        return guard.withFallback(
+                () -> flights.execute(id, () -> guard.call(() -> load(id))),
+                () -> {
+                    var item = snapshotCache.lastKnownItem(id);
+                    return item == null ? null : Optional.of(item);
+                }
+        );
+    }
+
+    // до сброса кэшей: перестраивающий их запрос не должен получить результат загрузки, начатой до изменения
+    @Order(MenuItemChangedEvent.COALESCING_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        flights.forget(event.getItem().getId());
+    }
+
+    private Optional<MenuItemDto> load(Long id) {
+        return repository.findById(id).map(mapper::toDto);
+    }
+}
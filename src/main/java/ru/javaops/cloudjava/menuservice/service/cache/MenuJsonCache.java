@@ -0,0 +1,207 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.service.resilience.StaleResponse;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Кэш готовых JSON ответов (UTF-8) на запросы блюда и списка блюд категории.
+ * Контроллер пишет эти байты в ответ напрямую, поэтому повторные запросы не сериализуются заново.
+ * <p>
+ * Список категории хранится вместе с версией категории из {@link CatalogVersion}, под которой он построен,
+ * и считается устаревшим, как только версия категории изменилась. Блюдо сбрасывается при его изменении;
+ * ответ, построенный по данным до изменения, не устанавливается в кэш (ключ сравнивается по ссылке на слот).
+ * Для списков по запросу дополнительно хранится сжатая gzip копия.
+ * Ответы, построенные по последним известным данным во время недоступности БД ({@link StaleResponse}), не кэшируются.
+ */
+@Component
+public class MenuJsonCache {
+
+    private final MenuService menuService;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final int maxItems;
+    private final Map<ListKey, Encoded> lists = new ConcurrentHashMap<>();
+    private final Map<Long, ItemSlot> items = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+
+    public MenuJsonCache(MenuService menuService,
+                         ObjectMapper objectMapper,
+                         CatalogVersion catalogVersion,
+                         MeterRegistry registry,
+                         @Value("${menu.json-cache.max-items:10000}") int maxItems) {
+        this.menuService = menuService;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.maxItems = maxItems;
+        this.hits = Counter.builder("menu.json.requests")
+                .description("Number of read requests served by the JSON response cache")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("menu.json.requests")
+                .description("Number of read requests served by the JSON response cache")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    /**
+     * Возвращает JSON списка блюд категории и версию категории, которой он соответствует.
+     */
+    public Encoded getMenusFor(Category category, SortBy sortBy) {
+        var key = new ListKey(category, sortBy);
+        // версию читаем до данных: если категория изменится во время построения, запись устареет при следующем чтении
+        long version = catalogVersion.current(category);
+        var cached = lists.get(key);
+        if (cached != null && cached.version() == version) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        var encoded = new Encoded(version, serialize(menuService.getMenusFor(category, sortBy)));
+        // без известной версии устаревший список нельзя отличить от актуального
+        if (version != CatalogVersion.UNKNOWN && !StaleResponse.isMarked()) {
+            lists.put(key, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Возвращает JSON блюда и версию блюда, которой он соответствует.
+     * Количество хранимых блюд ограничено max-items, остальные сериализуются при каждом запросе.
+     */
+    public Encoded getMenu(Long id) {
+        var slot = items.get(id);
+        if (slot != null && slot.encoded != null) {
+            hits.increment();
+            return slot.encoded;
+        }
+        misses.increment();
+        if (slot == null && items.size() < maxItems) {
+            slot = items.computeIfAbsent(id, key -> new ItemSlot(null));
+        }
+        Encoded encoded;
+        try {
+            var menu = menuService.getMenu(id);
+            encoded = new Encoded(menu.getVersion(), serialize(menu));
+        } catch (RuntimeException e) {
+            if (slot != null) {
+                items.remove(id, slot);
+            }
+            throw e;
+        }
+        // если блюдо изменилось во время чтения, слот уже удален и замена не произойдет
+        if (slot != null && StaleResponse.isMarked()) {
+            items.remove(id, slot);
+        } else if (slot != null) {
+            items.replace(id, slot, new ItemSlot(encoded));
+        }
+        return encoded;
+    }
+
+    public void invalidateAll() {
+        lists.clear();
+        items.clear();
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        invalidateAll();
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        var item = event.getItem();
+        items.remove(item.getId());
+        // списки и так устареют после увеличения версии категории, удаляем их сразу, чтобы освободить память
+        lists.keySet().removeIf(key -> key.category() == item.getCategory());
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize response to JSON", e);
+        }
+    }
+
+    /**
+     * JSON ответ и версия данных, по которым он построен.
+     */
+    public static final class Encoded {
+        private final long version;
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        Encoded(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public byte[] json() {
+            return json;
+        }
+
+        /**
+         * Сжатая копия строится при первом запросе; при одновременных запросах может быть построена
+         * несколько раз, но результат всегда одинаковый.
+         */
+        public byte[] gzip() {
+            var compressed = gzip;
+            if (compressed == null) {
+                compressed = compress(json);
+                gzip = compressed;
+            }
+            return compressed;
+        }
+
+        private static byte[] compress(byte[] data) {
+            var out = new ByteArrayOutputStream(data.length / 4 + 64);
+            try (var gzipOut = new GZIPOutputStream(out)) {
+                gzipOut.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private record ListKey(Category category, SortBy sortBy) {
+    }
+
+    /**
+     * Слот сравнивается по ссылке, поэтому слот, созданный заново после сброса, не совпадет со старым.
+     */
+    private static final class ItemSlot {
+        private final Encoded encoded;
+
+        ItemSlot(Encoded encoded) {
+            this.encoded = encoded;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.MenuSuggestion;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Резидентный префиксный индекс названий блюд для подсказок в строке поиска.
+ * <p>
+ * Для каждого слова названия хранится ключ - приведенный к нижнему регистру остаток названия, начиная с этого слова,
+ * поэтому "сал" находит и "Салат греческий", и "Греческий салат". Ключи хранятся в отсортированной
+ * {@link ConcurrentSkipListMap}: поиск по префиксу - это выборка диапазона ключей за O(log n), а изменения блюд
+ * применяются к индексу на месте после коммита транзакции, без перестроения.
+ * Индекс загружается из БД при первом обращении. Изменение, пришедшее во время загрузки, отбрасывает
+ * загруженные данные так же, как в {@link MenuPriceIndex}.
+ */
+@Slf4j
+@Component
+public class MenuNameIndex {
+
+    // отделяет ключ от id блюда, чтобы одинаковые названия разных блюд не перезаписывали друг друга
+    private static final char ID_SEPARATOR = '\u0000';
+
+    private final MenuItemRepository repository;
+    private final AtomicReference<State> current = new AtomicReference<>(new State(0, null));
+    private final Object loadLock = new Object();
+
+    public MenuNameIndex(MenuItemRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Возвращает не более limit блюд, одно из слов названия которых (вместе с продолжением названия) начинается
+     * с prefix, в алфавитном порядке совпавшей части названия. Регистр, буква ё и диакритические знаки латиницы не учитываются.
+     */
+    public List<MenuSuggestion> suggest(String prefix, int limit) {
+        var key = fold(prefix.strip());
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        var keys = index().keys;
+        List<MenuSuggestion> result = new ArrayList<>(limit);
+        Set<Long> seen = new HashSet<>();
+        for (MenuSuggestion suggestion : keys.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            // название может совпасть с префиксом несколькими словами, блюдо возвращаем один раз
+            if (seen.add(suggestion.getId())) {
+                result.add(suggestion);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public void invalidate() {
+        current.getAndUpdate(state -> new State(state.version + 1, null));
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        invalidate();
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        var state = current.get();
+        while (state.index == null) {
+            // индекс еще не загружен - достаточно сменить версию, чтобы отбросить идущую загрузку
+            if (current.compareAndSet(state, new State(state.version + 1, null))) {
+                return;
+            }
+            state = current.get();
+        }
+        state.index.apply(event);
+    }
+
+    private Index index() {
+        var state = current.get();
+        return state.index != null ? state.index : load();
+    }
+
+    private Index load() {
+        synchronized (loadLock) {
+            while (true) {
+                var expected = current.get();
+                if (expected.index != null) {
+                    return expected.index;
+                }
+                var index = new Index();
+                for (MenuItemProjection projection : repository.getMenuInfoForAll()) {
+                    index.put(projection.getId(), projection.getName());
+                }
+                if (current.compareAndSet(expected, new State(expected.version, index))) {
+                    log.info("Loaded menu name index version {} with {} items", expected.version, index.nameById.size());
+                    return index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Приводит строку к виду для сравнения: нижний регистр, ё заменяется на е, у букв латиницы
+     * удаляются диакритические знаки (é -> e). Кириллические буквы, кроме ё, не изменяются, так как й и и - разные буквы.
+     */
+    static String fold(String value) {
+        var folded = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = Character.toLowerCase(value.charAt(i));
+            if (c == 'ё') {
+                c = 'е';
+            } else if (c >= 'À' && c < 'ɐ') {
+                c = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).charAt(0);
+            }
+            folded.append(c);
+        }
+        return folded.toString();
+    }
+
+    private record State(long version, Index index) {
+    }
+
+    private static final class Index {
+        private final ConcurrentSkipListMap<String, MenuSuggestion> keys = new ConcurrentSkipListMap<>();
+        private final Map<Long, String> nameById = new ConcurrentHashMap<>();
+
+        // удаление старых ключей и добавление новых выполняются атомарно относительно других изменений
+        private synchronized void apply(MenuItemChangedEvent event) {
+            MenuItemDto item = event.getItem();
+            remove(item.getId());
+            if (event.getType() != MenuItemChangedEvent.Type.DELETED) {
+                put(item.getId(), item.getName());
+            }
+        }
+
+        private void put(Long id, String name) {
+            nameById.put(id, name);
+            var suggestion = new MenuSuggestion(id, name);
+            forEachKey(id, name, key -> keys.put(key, suggestion));
+        }
+
+        private void remove(Long id) {
+            var name = nameById.remove(id);
+            if (name != null) {
+                forEachKey(id, name, keys::remove);
+            }
+        }
+
+        private static void forEachKey(Long id, String name, Consumer<String> action) {
+            var folded = fold(name);
+            var suffix = ID_SEPARATOR + id.toString();
+            for (int i = 0; i < folded.length(); i++) {
+                boolean wordStart = Character.isLetterOrDigit(folded.charAt(i))
+                        && (i == 0 || !Character.isLetterOrDigit(folded.charAt(i - 1)));
+                if (wordStart) {
+                    action.accept(folded.substring(i) + suffix);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Резидентный индекс "название блюда -> (цена, id)" для запроса информации о блюдах при оформлении заказа.
+ * <p>
+ * Индекс загружается из БД один раз при первом обращении, после чего изменения, сделанные через
+ * {@link ru.javaops.cloudjava.menuservice.service.MenuService}, применяются к нему после коммита транзакции.
+ * Все изменения одной транзакции создают одну новую неизменяемую версию индекса (copy-on-write), поэтому
+ * читатели работают без блокировок и всегда видят согласованное состояние одной версии, а массовая операция
+ * копирует индекс один раз, а не по разу на каждое блюдо.
+ * Цены хранятся в копейках (long), а не в {@link BigDecimal}.
+ * Если БД недоступна, используется последняя загруженная версия индекса (см. {@link DatabaseGuard}).
+ */
+@Slf4j
+@Component
+public class MenuPriceIndex {
+
+    // количество знаков после запятой в колонке price: NUMERIC(6,2)
+    private static final int PRICE_SCALE = 2;
+
+    private final MenuItemRepository repository;
+    private final DatabaseGuard guard;
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, null, null));
+    // последняя загруженная версия, в том числе сброшенная, - используется, пока БД недоступна
+    private final AtomicReference<Snapshot> lastKnown = new AtomicReference<>();
+    // одновременные обращения к незагруженному индексу ждут одну загрузку
+    private final SingleFlight<Long, Snapshot> loads;
+
+    public MenuPriceIndex(MenuItemRepository repository,
+                          DatabaseGuard guard,
+                          @Value("${menu.deadline.shared-load-timeout:10s}") Duration loadTimeout,
+                          MeterRegistry registry) {
+        this.repository = repository;
+        this.guard = guard;
+        this.loads = new SingleFlight<>("price-index", loadTimeout, registry);
+    }
+
+    /**
+     * Возвращает текущую версию индекса, при необходимости загружая ее из БД.
+     */
+    public Snapshot snapshot() {
+        var snapshot = current.get();
+        if (snapshot.isLoaded()) {
+            return snapshot;
+        }
+        return guard.withFallback(() -> loads.execute(snapshot.version, this::load), lastKnown::get);
+    }
+
+    public void invalidate() {
+        current.getAndUpdate(snapshot -> new Snapshot(snapshot.version + 1, null, null));
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        invalidate();
+    }
+
+    /**
+     * Изменения, сделанные в транзакции, накапливаются и применяются одним пакетом после ее коммита.
+     * Изменения вне транзакции (в том числе пришедшие от других экземпляров) применяются сразу.
+     */
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @EventListener
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || !TransactionSynchronizationManager.isActualTransactionActive()) {
+            apply(List.of(event));
+            return;
+        }
+        pendingChanges().events.add(event);
+    }
+
+    private PendingChanges pendingChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+        var pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private void apply(List<MenuItemChangedEvent> events) {
+        var updated = current.updateAndGet(snapshot -> snapshot.apply(events));
+        if (updated.isLoaded()) {
+            lastKnown.set(updated);
+        }
+    }
+
+    private Snapshot load() {
+        while (true) {
+            var expected = current.get();
+            if (expected.isLoaded()) {
+                return expected;
+            }
+            Map<String, Entry> byName = new HashMap<>();
+            Map<Long, String> nameById = new HashMap<>();
+            for (MenuItemProjection projection : guard.call(repository::getMenuInfoForAll)) {
+                byName.put(projection.getName(), new Entry(projection.getId(), toMinorUnits(projection.getPrice())));
+                nameById.put(projection.getId(), projection.getName());
+            }
+            var loaded = new Snapshot(expected.version, byName, nameById);
+            // если во время загрузки пришло изменение, загруженные данные могут быть устаревшими - загружаем заново
+            if (current.compareAndSet(expected, loaded)) {
+                lastKnown.set(loaded);
+                log.info("Loaded menu price index version {} with {} items", loaded.version, byName.size());
+                return loaded;
+            }
+        }
+    }
+
+    // изменения текущей транзакции; синхронизация приостанавливается вместе с транзакцией
+    private final class PendingChanges implements TransactionSynchronization {
+        private final List<MenuItemChangedEvent> events = new ArrayList<>();
+
+        private MenuPriceIndex owner() {
+            return MenuPriceIndex.this;
+        }
+
+        @Override
+        public int getOrder() {
+            return MenuItemChangedEvent.CACHE_ORDER;
+        }
+
+        @Override
+        public void afterCommit() {
+            apply(events);
+        }
+    }
+
+    static long toMinorUnits(BigDecimal price) {
+        return price.setScale(PRICE_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Цена и идентификатор блюда в индексе.
+     */
+    public record Entry(long id, long priceMinorUnits) {
+
+        public BigDecimal price() {
+            return BigDecimal.valueOf(priceMinorUnits, PRICE_SCALE);
+        }
+    }
+
+    /**
+     * Неизменяемая версия индекса.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final Map<String, Entry> byName;
+        private final Map<Long, String> nameById;
+
+        private Snapshot(long version, Map<String, Entry> byName, Map<Long, String> nameById) {
+            this.version = version;
+            this.byName = byName == null ? null : Collections.unmodifiableMap(byName);
+            this.nameById = nameById == null ? null : Collections.unmodifiableMap(nameById);
+        }
+
+        public long version() {
+            return version;
+        }
+
+        /**
+         * @return цена и id блюда или null, если блюда с таким названием нет
+         */
+        public Entry find(String name) {
+            return byName.get(name);
+        }
+
+        public int size() {
+            return byName.size();
+        }
+
+        private boolean isLoaded() {
+            return byName != null;
+        }
+
+        private Snapshot apply(List<MenuItemChangedEvent> events) {
+            if (!isLoaded()) {
+                // индекс еще не загружен - достаточно сменить версию, чтобы отбросить идущую загрузку
+                return new Snapshot(version + 1, null, null);
+            }
+            Map<String, Entry> newByName = new HashMap<>(byName);
+            Map<Long, String> newNameById = new HashMap<>(nameById);
+            // при обновлении название могло измениться, поэтому сначала удаляем записи по старым названиям всех
+            // измененных блюд: в одной транзакции блюда могут обменяться названиями
+            for (MenuItemChangedEvent event : events) {
+                removeById(newByName, newNameById, event.getItem().getId());
+            }
+            for (MenuItemChangedEvent event : events) {
+                MenuItemDto item = event.getItem();
+                // блюдо могло измениться в транзакции несколько раз
+                removeById(newByName, newNameById, item.getId());
+                if (event.getType() != MenuItemChangedEvent.Type.DELETED) {
+                    newByName.put(item.getName(), new Entry(item.getId(), toMinorUnits(item.getPrice())));
+                    newNameById.put(item.getId(), item.getName());
+                }
+            }
+            return new Snapshot(version + 1, newByName, newNameById);
+        }
+
+        private static void removeById(Map<String, Entry> byName, Map<Long, String> nameById, Long id) {
+            String name = nameById.remove(id);
+            if (name != null) {
+                byName.remove(name);
+            }
+        }
+    }
+}
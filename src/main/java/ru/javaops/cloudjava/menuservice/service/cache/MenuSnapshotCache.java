@@ -0,0 +1,156 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Кэш снимков категорий меню. Чтение не использует блокировок: снимок категории
+ * хранится в {@link AtomicReference} и заменяется целиком.
+ * <p>
+ * При изменении блюда снимок его категории сбрасывается (после коммита транзакции),
+ * а при следующем чтении строится заново одним запросом к БД. Каждый сброс увеличивает
+ * поколение слота, поэтому снимок, построенный по данным до изменения, не будет установлен.
+ * Одновременные промахи по одному поколению категории строят снимок одним запросом (см. {@link SingleFlight}).
+ * Если БД недоступна, читатели получают последний построенный снимок категории (см. {@link DatabaseGuard}).
+ */
+@Slf4j
+@Component
+public class MenuSnapshotCache {
+
+    private final MenuItemRepository repository;
+    private final MenuItemMapper mapper;
+    private final DatabaseGuard guard;
+    // набор ключей фиксирован и не меняется после создания, поэтому обычная EnumMap безопасна для чтения
+    private final Map<Category, AtomicReference<Slot>> slots;
+    // последний построенный снимок категории, в том числе сброшенный, - отдается, пока БД недоступна
+    private final Map<Category, AtomicReference<CategorySnapshot>> lastKnown;
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer rebuildTimer;
+    private final SingleFlight<RebuildKey, CategorySnapshot> rebuilds;
+
+    public MenuSnapshotCache(MenuItemRepository repository,
+                             MenuItemMapper mapper,
+                             DatabaseGuard guard,
+                             @Value("${menu.deadline.shared-load-timeout:10s}") Duration loadTimeout,
+                             MeterRegistry registry) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.guard = guard;
+        Map<Category, AtomicReference<Slot>> slots = new EnumMap<>(Category.class);
+        Map<Category, AtomicReference<CategorySnapshot>> lastKnown = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            slots.put(category, new AtomicReference<>(new Slot(0, null)));
+            lastKnown.put(category, new AtomicReference<>());
+        }
+        this.slots = Collections.unmodifiableMap(slots);
+        this.lastKnown = Collections.unmodifiableMap(lastKnown);
+        this.hits = Counter.builder("menu.snapshot.requests")
+                .description("Number of category list requests served by the snapshot cache")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("menu.snapshot.requests")
+                .description("Number of category list requests served by the snapshot cache")
+                .tag("result", "miss")
+                .register(registry);
+        this.rebuildTimer = Timer.builder("menu.snapshot.rebuild")
+                .description("Time spent rebuilding a category snapshot")
+                .register(registry);
+        this.rebuilds = new SingleFlight<>("category-snapshot", loadTimeout, registry);
+    }
+
+    public List<MenuItemDto> getMenusFor(Category category, SortBy sortBy) {
+        var ref = slots.get(category);
+        var slot = ref.get();
+        if (slot.snapshot() != null) {
+            hits.increment();
+            return slot.snapshot().get(sortBy);
+        }
+        misses.increment();
+        var key = new RebuildKey(category, slot.generation());
+        return guard.withFallback(
+                () -> rebuilds.execute(key, () -> rebuild(category, ref, slot)),
+                () -> lastKnown.get(category).get()
+        ).get(sortBy);
+    }
+
+    /**
+     * Блюдо из последних построенных снимков категорий или null, если его там нет.
+     * Используется как последние известные данные, пока БД недоступна.
+     */
+    public MenuItemDto lastKnownItem(Long id) {
+        for (AtomicReference<CategorySnapshot> ref : lastKnown.values()) {
+            var snapshot = ref.get();
+            if (snapshot != null) {
+                for (MenuItemDto item : snapshot.get(SortBy.AZ)) {
+                    if (item.getId().equals(id)) {
+                        return item;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public void invalidate(Category category) {
+        slots.get(category).getAndUpdate(slot -> new Slot(slot.generation() + 1, null));
+    }
+
+    public void invalidateAll() {
+        slots.keySet().forEach(this::invalidate);
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        invalidateAll();
+    }
+
+    @Order(MenuItemChangedEvent.CACHE_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        invalidate(event.getItem().getCategory());
+    }
+
+    private CategorySnapshot rebuild(Category category, AtomicReference<Slot> ref, Slot expected) {
+        // порядок по названию берется из БД, остальные представления снимок сортирует сам
+        var snapshot = rebuildTimer.record(
+                () -> CategorySnapshot.of(mapper.toDtoList(guard.call(() -> repository.getMenusFor(category, SortBy.AZ))))
+        );
+        lastKnown.get(category).set(snapshot);
+        // если за время построения категорию сбросили, снимок отдаем только текущему читателю
+        if (ref.compareAndSet(expected, new Slot(expected.generation(), snapshot))) {
+            log.debug("Rebuilt snapshot for category {} with {} items", category, snapshot.size());
+        }
+        return snapshot;
+    }
+
+    private record Slot(long generation, CategorySnapshot snapshot) {
+    }
+
+    // после сброса поколение меняется, и новые читатели не присоединяются к построению по старым данным
+    private record RebuildKey(Category category, long generation) {
+    }
+}
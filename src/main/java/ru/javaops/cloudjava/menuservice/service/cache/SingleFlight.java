@@ -0,0 +1,120 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одновременных одинаковых загрузок (single flight): пока загрузка по ключу выполняется,
+ * остальные запросы с тем же ключом не обращаются к БД, а ждут ее результата. Ошибка загрузки
+ * передается всем ожидающим и не запоминается - следующий запрос выполнит загрузку заново.
+ * <p>
+ * Ожидающие получают тот же объект результата, поэтому результат не должен изменяться вызывающими.
+ * Загрузка выполняется в потоке первого запроса, транзакция ожидающих в ней не участвует.
+ * <p>
+ * Загрузка ограничена собственным сроком loadTimeout, а не крайним сроком первого запроса ({@link RequestDeadline}),
+ * чтобы ее результат не терялся для остальных из-за срока одного из них. Ожидающий ждет не дольше своего
+ * крайнего срока и получает 504, а запрос с уже истекшим сроком завершается ошибкой, не начиная загрузку.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration loadTimeout;
+    private final Counter executed;
+    private final Counter deduplicated;
+
+    public SingleFlight(String name, Duration loadTimeout, MeterRegistry registry) {
+        this.loadTimeout = loadTimeout;
+        this.executed = Counter.builder("menu.singleflight.requests")
+                .description("Number of coalesced lookups that executed the load or waited for a concurrent one")
+                .tag("flight", name)
+                .tag("result", "executed")
+                .register(registry);
+        this.deduplicated = Counter.builder("menu.singleflight.requests")
+                .description("Number of coalesced lookups that executed the load or waited for a concurrent one")
+                .tag("flight", name)
+                .tag("result", "deduplicated")
+                .register(registry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        if (RequestDeadline.isExpired()) {
+            throw deadlineExceeded();
+        }
+        var own = new CompletableFuture<V>();
+        var running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            deduplicated.increment();
+            return await(running);
+        }
+        executed.increment();
+        V result;
+        try {
+            result = RequestDeadline.withTimeout(loadTimeout, loader);
+        } catch (RuntimeException | Error e) {
+            // ключ освобождается до завершения, чтобы пришедший после ошибки запрос загружал заново
+            inFlight.remove(key, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+        inFlight.remove(key, own);
+        own.complete(result);
+        return result;
+    }
+
+    /**
+     * Следующие запросы по ключу не присоединятся к уже выполняющейся загрузке, которая могла прочитать
+     * данные до изменения, а выполнят новую.
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        var remaining = RequestDeadline.remainingNanos();
+        if (remaining.isEmpty()) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw unwrap(e, e.getCause());
+            }
+        }
+        try {
+            // ожидание завершается не раньше срока, поэтому после таймаута срок запроса считается истекшим
+            return running.get(Math.max(remaining.getAsLong(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw deadlineExceeded();
+        } catch (ExecutionException e) {
+            throw unwrap(e, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a concurrent load", e);
+        }
+    }
+
+    private static RuntimeException unwrap(Exception e, Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+
+    private static MenuServiceException deadlineExceeded() {
+        return new MenuServiceException("Request deadline exceeded while waiting for menu data.", HttpStatus.GATEWAY_TIMEOUT);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.javaops.cloudjava.menuservice.service.coherence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+
+/**
+ * Получает уведомления {@link MenuChangeNotifier} об изменениях, сделанных другими экземплярами сервиса,
+ * и применяет их к локальным кэшам: вытесняет блюдо из кэша второго уровня Hibernate и публикует
+ * {@link MenuItemChangedEvent} с признаком remote, который обрабатывают те же подписчики, что и локальные изменения.
+ * <p>
+ * Для LISTEN используется отдельное соединение с основной БД вне пула (реплики уведомления не получают).
+ * Уведомления, отправленные, пока соединения нет, теряются, поэтому после переподключения
+ * публикуется {@link MenuResyncEvent} и все локальные кэши сбрасываются.
+ */
+@Slf4j
+@Component
+public class MenuChangeListener implements SmartLifecycle {
+
+    private final MenuChangeNotifier notifier;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Cache hibernateCache;
+    private final DataSource dataSource;
+    private final boolean enabled;
+    private final int pollMillis;
+    private final long validationNanos;
+    private final long reconnectDelayMillis;
+    private final Counter received;
+    private final Counter resyncs;
+    private final Timer lag;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Thread thread;
+
+    public MenuChangeListener(MenuChangeNotifier notifier,
+                              ObjectMapper objectMapper,
+                              ApplicationEventPublisher eventPublisher,
+                              EntityManagerFactory entityManagerFactory,
+                              DataSourceProperties dataSourceProperties,
+                              MeterRegistry registry,
+                              @Value("${menu.coherence.enabled:true}") boolean enabled,
+                              @Value("${menu.coherence.poll-interval:500ms}") Duration pollInterval,
+                              @Value("${menu.coherence.validation-interval:10s}") Duration validationInterval,
+                              @Value("${menu.coherence.reconnect-delay:1s}") Duration reconnectDelay) {
+        this.notifier = notifier;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.hibernateCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+        // соединение создается драйвером напрямую: оно занято все время работы и не должно уменьшать пул
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(SimpleDriverDataSource.class).build();
+        this.enabled = enabled;
+        this.pollMillis = (int) pollInterval.toMillis();
+        this.validationNanos = validationInterval.toNanos();
+        this.reconnectDelayMillis = reconnectDelay.toMillis();
+        this.received = Counter.builder("menu.coherence.received")
+                .description("Number of menu change notifications received from other service instances")
+                .register(registry);
+        this.resyncs = Counter.builder("menu.coherence.resyncs")
+                .description("Number of full local cache resyncs after missed menu change notifications")
+                .register(registry);
+        this.lag = Timer.builder("menu.coherence.lag")
+                .description("Time between sending a menu change notification and applying it on this instance")
+                .register(registry);
+        Gauge.builder("menu.coherence.connected", this, listener -> listener.connected ? 1 : 0)
+                .description("Whether the menu change notification channel is connected")
+                .register(registry);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        var listenerThread = new Thread(this::run, "menu-coherence");
+        listenerThread.setDaemon(true);
+        thread = listenerThread;
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        var listenerThread = thread;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            try {
+                listenerThread.join(pollMillis + reconnectDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        boolean firstConnection = true;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + notifier.channel());
+                }
+                connected = true;
+                log.info("Listening for menu change notifications on channel {}", notifier.channel());
+                if (!firstConnection) {
+                    resync("notification channel reconnected");
+                }
+                firstConnection = false;
+                listen(connection);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Menu change notification channel failed, reconnecting in {} ms. Reason: {}",
+                            reconnectDelayMillis, e.getMessage());
+                }
+            } finally {
+                connected = false;
+            }
+            sleepBeforeReconnect();
+        }
+    }
+
+    private void listen(Connection connection) throws SQLException {
+        var pgConnection = connection.unwrap(PGConnection.class);
+        long validatedAt = System.nanoTime();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    handle(notification.getParameter());
+                }
+                validatedAt = System.nanoTime();
+            } else if (System.nanoTime() - validatedAt > validationNanos) {
+                // без трафика обрыв соединения иначе не обнаружить
+                if (!connection.isValid((int) Math.max(1, pollMillis / 1000))) {
+                    throw new SQLException("Notification connection is no longer valid");
+                }
+                validatedAt = System.nanoTime();
+            }
+        }
+    }
+
+    void handle(String payload) {
+        MenuChangeNotification notification;
+        try {
+            notification = objectMapper.readValue(payload, MenuChangeNotification.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to parse menu change notification, resyncing. Reason: {}", e.getMessage());
+            resync("unreadable notification");
+            return;
+        }
+        if (notifier.instanceId().equals(notification.origin())) {
+            return;
+        }
+        received.increment();
+        try {
+            if (notification.item() == null) {
+                resync("notification without menu item");
+            } else {
+                apply(notification);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to apply menu change notification, resyncing. Reason: {}", e.getMessage());
+            resync("failed to apply notification");
+        }
+        lag.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - notification.sentAt())));
+    }
+
+    private void apply(MenuChangeNotification notification) {
+        hibernateCache.evictEntityData(MenuItem.class, notification.item().getId());
+        hibernateCache.evictQueryRegion(MenuItem.CATEGORY_QUERY_CACHE_REGION);
+        hibernateCache.evictDefaultQueryRegion();
+        var event = new MenuItemChangedEvent(notification.type(), notification.item(), true);
+        event.assignCategoryVersion(notification.categoryVersion());
+        eventPublisher.publishEvent(event);
+    }
+
+    private void resync(String reason) {
+        log.info("Resyncing local menu caches: {}", reason);
+        hibernateCache.evictAllRegions();
+        eventPublisher.publishEvent(new MenuResyncEvent(reason));
+        resyncs.increment();
+    }
+
+    private void sleepBeforeReconnect() {
+        if (!running) {
+            return;
+        }
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
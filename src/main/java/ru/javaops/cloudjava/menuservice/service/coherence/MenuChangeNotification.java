@@ -0,0 +1,16 @@
+package ru.javaops.cloudjava.menuservice.service.coherence;
+
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+
+/**
+ * Уведомление об изменении блюда, передаваемое другим экземплярам сервиса через PostgreSQL NOTIFY.
+ *
+ * @param origin          идентификатор экземпляра, сделавшего изменение
+ * @param item            состояние блюда после изменения или null, если оно не помещается в уведомление
+ * @param categoryVersion версия категории блюда в БД, которую получило изменение
+ * @param sentAt          время отправки в миллисекундах от начала эпохи, используется для метрики задержки
+ */
+public record MenuChangeNotification(String origin, MenuItemChangedEvent.Type type, MenuItemDto item,
+                                     long categoryVersion, long sentAt) {
+}
@@ -0,0 +1,90 @@
+package ru.javaops.cloudjava.menuservice.service.coherence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Отправляет другим экземплярам сервиса уведомление об изменении блюда через PostgreSQL NOTIFY.
+ * Уведомление отправляется в транзакции самого изменения, поэтому PostgreSQL доставляет его слушателям
+ * только после коммита и не доставляет при откате.
+ */
+@Slf4j
+@Component
+public class MenuChangeNotifier {
+
+    // PostgreSQL ограничивает размер уведомления 8000 байтами
+    static final int MAX_PAYLOAD_BYTES = 7900;
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]*");
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ObjectMapper objectMapper;
+    private final String channel;
+
+    @PersistenceContext
+    private EntityManager em;
+
+    public MenuChangeNotifier(ObjectMapper objectMapper,
+                              @Value("${menu.coherence.channel:menu_changes}") String channel) {
+        if (!CHANNEL.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid menu coherence channel name: " + channel);
+        }
+        this.objectMapper = objectMapper;
+        this.channel = channel;
+    }
+
+    /**
+     * Идентификатор экземпляра: по нему слушатель пропускает уведомления о собственных изменениях.
+     */
+    public String instanceId() {
+        return instanceId;
+    }
+
+    public String channel() {
+        return channel;
+    }
+
+    // после CatalogVersion, устанавливающего версию категории изменения
+    @Order(MenuItemChangedEvent.FEED_ORDER)
+    @EventListener(condition = "!#event.remote")
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        em.createNativeQuery("SELECT CAST(pg_notify(:channel, :payload) AS TEXT)")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload(event))
+                .getSingleResult();
+    }
+
+    private String payload(MenuItemChangedEvent event) {
+        long now = System.currentTimeMillis();
+        var payload = serialize(new MenuChangeNotification(instanceId, event.getType(), event.getItem(),
+                event.getCategoryVersion(), now));
+        if (payload.getBytes(StandardCharsets.UTF_8).length <= MAX_PAYLOAD_BYTES) {
+            return payload;
+        }
+        // блюдо не помещается в уведомление: получатели сбросят кэши целиком
+        log.debug("Menu item {} does not fit into a change notification, peers will resync", event.getItem().getId());
+        return serialize(new MenuChangeNotification(instanceId, event.getType(), null, event.getCategoryVersion(), now));
+    }
+
+    private String serialize(MenuChangeNotification notification) {
+        try {
+            return objectMapper.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize menu change notification to JSON", e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.javaops.cloudjava.menuservice.service.event;
+
+import lombok.Getter;
+import lombok.ToString;
+import org.springframework.core.Ordered;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+
+/**
+ * Событие об изменении блюда, публикуется сервисом при создании, обновлении и удалении.
+ * Подписчики (кэши, индексы) обрабатывают его после коммита транзакции.
+ * Изменения, сделанные другими экземплярами сервиса, публикуются повторно вне транзакции с признаком remote
+ * (см. {@link ru.javaops.cloudjava.menuservice.service.coherence.MenuChangeListener}).
+ */
+@Getter
+@ToString
+public class MenuItemChangedEvent {
+
+    // порядок обработки события после коммита: сначала сбрасываются кэши данных и только затем
+    // меняется версия каталога, иначе клиент может получить новую версию вместе со старыми данными.
+    // Подписчики ленты изменений уведомляются последними, когда новая версия уже установлена.
+    // Раньше всех открывается окно чтения с основной БД, чтобы перестроение кэшей не читало отстающую реплику,
+    // и забываются выполняющиеся загрузки, начатые до изменения
+    public static final int ROUTING_ORDER = -1;
+    public static final int COALESCING_ORDER = -1;
+    public static final int CACHE_ORDER = 0;
+    public static final int VERSION_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+    public static final int FEED_ORDER = Ordered.LOWEST_PRECEDENCE;
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    // состояние блюда после изменения, для DELETED - последнее известное состояние
+    private final MenuItemDto item;
+    // изменение сделано другим экземпляром сервиса и уже записано им в БД и outbox
+    private final boolean remote;
+    // версия категории блюда в БД, которую получило это изменение; устанавливается CatalogVersion в транзакции
+    // изменения и передается другим экземплярам в уведомлении. 0 - версия неизвестна
+    private long categoryVersion;
+    // версия каталога, которую получило это изменение; устанавливается CatalogVersion после коммита,
+    // до уведомления ленты изменений
+    private long catalogVersion;
+
+    public MenuItemChangedEvent(Type type, MenuItemDto item) {
+        this(type, item, false);
+    }
+
+    public MenuItemChangedEvent(Type type, MenuItemDto item, boolean remote) {
+        this.type = type;
+        this.item = item;
+        this.remote = remote;
+    }
+
+    public void assignCategoryVersion(long categoryVersion) {
+        this.categoryVersion = categoryVersion;
+    }
+
+    public void assignCatalogVersion(long catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+}
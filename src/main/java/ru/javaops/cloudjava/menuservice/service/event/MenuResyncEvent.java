@@ -0,0 +1,30 @@
+package ru.javaops.cloudjava.menuservice.service.event;
+
+import lombok.Getter;
+import lombok.ToString;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.util.Map;
+
+/**
+ * Событие о том, что экземпляр сервиса мог пропустить изменения меню, сделанные другими экземплярами
+ * (например, после переподключения канала уведомлений). Подписчики сбрасывают локальные кэши целиком.
+ * Порядок обработки подписчиками тот же, что и для {@link MenuItemChangedEvent}.
+ */
+@Getter
+@ToString
+public class MenuResyncEvent {
+
+    private final String reason;
+    // версии категорий в БД, прочитанные до сброса кэшей; устанавливаются CatalogVersion,
+    // null - прочитать не удалось
+    private Map<Category, Long> categoryVersions;
+
+    public MenuResyncEvent(String reason) {
+        this.reason = reason;
+    }
+
+    public void assignCategoryVersions(Map<Category, Long> categoryVersions) {
+        this.categoryVersions = categoryVersions;
+    }
+}
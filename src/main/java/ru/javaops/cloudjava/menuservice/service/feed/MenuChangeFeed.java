@@ -0,0 +1,355 @@
+package ru.javaops.cloudjava.menuservice.service.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.javaops.cloudjava.menuservice.dto.MenuChangeEvent;
+import ru.javaops.cloudjava.menuservice.service.cache.CatalogVersion;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Лента изменений меню для подписчиков Server-Sent Events.
+ * <p>
+ * События публикуются после коммита изменения, когда версия каталога уже увеличена.
+ * Каждое событие получает идентификатор вида {@code <эпоха>-<номер>}; последние buffer-size событий хранятся в памяти,
+ * поэтому подписчик, переподключившийся с заголовком Last-Event-ID, получает пропущенные события.
+ * Если пропущенных событий в буфере уже нет или идентификатор выдан другим запуском сервиса,
+ * подписчик получает событие reset и должен заново загрузить меню.
+ * <p>
+ * Нумерация и буфер обслуживаются одним потоком, поэтому все подписчики получают события в одном порядке,
+ * а подписка не может пропустить событие между воспроизведением буфера и началом рассылки.
+ * Этот поток только ставит события в очереди подписчиков, а отправкой каждому подписчику занимается отдельная задача:
+ * медленный клиент не задерживает остальных. Если очередь подписчика переполнена (клиент не успевает читать),
+ * подписка закрывается; клиент переподключается с Last-Event-ID и получает пропущенное из буфера или reset.
+ * Лента локальна для экземпляра сервиса.
+ */
+@Slf4j
+@Component
+public class MenuChangeFeed {
+
+    public static final String CHANGE_EVENT = "menu-changed";
+    public static final String RESET_EVENT = "reset";
+
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    private final int bufferSize;
+    private final int subscriberQueueSize;
+    private final long emitterTimeoutMillis;
+    private final ScheduledExecutorService executor;
+    private final ExecutorService senders;
+    private final Map<SseEmitter, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Counter dropped;
+    // доступны только из потока ленты
+    private final ArrayDeque<Entry> buffer;
+    private long sequence;
+
+    public MenuChangeFeed(CatalogVersion catalogVersion,
+                          ObjectMapper objectMapper,
+                          MeterRegistry registry,
+                          @Value("${menu.feed.buffer-size:1000}") int bufferSize,
+                          @Value("${menu.feed.subscriber-queue-size:100}") int subscriberQueueSize,
+                          @Value("${menu.feed.emitter-timeout:30m}") Duration emitterTimeout,
+                          @Value("${menu.feed.heartbeat-interval:15s}") Duration heartbeatInterval) {
+        this.catalogVersion = catalogVersion;
+        this.objectMapper = objectMapper;
+        this.bufferSize = bufferSize;
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        this.buffer = new ArrayDeque<>(bufferSize);
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "menu-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // отправка блокируется, пока клиент не прочитает данные, поэтому каждому подписчику нужен свой поток;
+        // поток занят, только пока в очереди подписчика есть события
+        this.senders = Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "menu-feed-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // комментарий не виден клиенту, но не дает прокси закрыть простаивающее соединение и обнаруживает отключившихся
+        long heartbeat = heartbeatInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        Gauge.builder("menu.feed.subscribers", subscribers, Map::size)
+                .description("Number of active menu change feed subscribers")
+                .register(registry);
+        this.dropped = Counter.builder("menu.feed.dropped")
+                .description("Number of subscribers disconnected because they did not keep up with the feed")
+                .register(registry);
+    }
+
+    /**
+     * Подписывает клиента на ленту. Если передан идентификатор последнего полученного события,
+     * сначала отправляются события, произошедшие после него.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        var emitter = new SseEmitter(emitterTimeoutMillis);
+        subscribe(lastEventId, emitter);
+        return emitter;
+    }
+
+    void subscribe(String lastEventId, SseEmitter emitter) {
+        var subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscriber.close());
+        executor.execute(() -> {
+            replay(lastEventId, subscriber);
+            subscribers.put(emitter, subscriber);
+            // отправка воспроизведенных событий могла уже завершиться ошибкой и закрыть подписку
+            if (subscriber.isClosed()) {
+                subscribers.remove(emitter, subscriber);
+            }
+        });
+    }
+
+    /**
+     * Отправляет всем подписчикам событие reset: изменения могли быть пропущены, и меню нужно загрузить заново.
+     */
+    public void reset() {
+        executor.execute(() -> {
+            var data = Long.toString(catalogVersion.current());
+            for (Subscriber subscriber : subscribers.values()) {
+                subscriber.offer(resetEvent(data), false);
+            }
+        });
+    }
+
+    @Order(MenuItemChangedEvent.FEED_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        reset();
+    }
+
+    @Order(MenuItemChangedEvent.FEED_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        var change = new MenuChangeEvent(event.getType(), event.getCatalogVersion(), event.getItem());
+        // сериализуем один раз в потоке, закоммитившем изменение, а не для каждого подписчика
+        var data = serialize(change);
+        executor.execute(() -> publish(data));
+    }
+
+    /**
+     * Дожидается отправки всех событий и подписок, поставленных в очередь до вызова. Используется в тестах.
+     */
+    void awaitDispatched() throws InterruptedException, ExecutionException, TimeoutException {
+        executor.submit(() -> {
+        }).get();
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.awaitIdle();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        senders.shutdownNow();
+        subscribers.keySet().forEach(SseEmitter::complete);
+        subscribers.clear();
+    }
+
+    private void publish(String data) {
+        var entry = new Entry(++sequence, data);
+        if (buffer.size() == bufferSize) {
+            buffer.pollFirst();
+        }
+        buffer.addLast(entry);
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offer(changeEvent(entry), false);
+        }
+    }
+
+    /**
+     * События буфера ставятся в очередь подписчика без ограничения: их не больше buffer-size.
+     */
+    private void replay(String lastEventId, Subscriber subscriber) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return;
+        }
+        long last = parseSequence(lastEventId.trim());
+        long oldest = buffer.isEmpty() ? sequence + 1 : buffer.peekFirst().sequence();
+        if (last < oldest - 1 || last > sequence) {
+            log.info("Menu change feed cannot resume from Last-Event-ID {}, sending reset", lastEventId);
+            subscriber.offer(resetEvent(Long.toString(catalogVersion.current())), true);
+            return;
+        }
+        for (Entry entry : buffer) {
+            if (entry.sequence() > last) {
+                subscriber.offer(changeEvent(entry), true);
+            }
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.offer(SseEmitter.event().comment("heartbeat"), false);
+        }
+    }
+
+    private SseEmitter.SseEventBuilder changeEvent(Entry entry) {
+        return SseEmitter.event()
+                .id(eventId(entry.sequence()))
+                .name(CHANGE_EVENT)
+                .data(entry.data(), MediaType.APPLICATION_JSON);
+    }
+
+    private SseEmitter.SseEventBuilder resetEvent(String data) {
+        return SseEmitter.event()
+                .id(eventId(sequence))
+                .name(RESET_EVENT)
+                .data(data);
+    }
+
+    private String eventId(long sequence) {
+        return catalogVersion.epoch() + "-" + sequence;
+    }
+
+    /**
+     * Номер события из идентификатора или -1, если идентификатор выдан другим запуском сервиса или некорректен.
+     */
+    private long parseSequence(String eventId) {
+        var prefix = catalogVersion.epoch() + "-";
+        if (!eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String serialize(MenuChangeEvent change) {
+        try {
+            return objectMapper.writeValueAsString(change);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize menu change event to JSON", e);
+        }
+    }
+
+    private record Entry(long sequence, String data) {
+    }
+
+    /**
+     * Очередь событий одного подписчика. Пока очередь не пуста, ее разбирает одна задача в пуле senders,
+     * поэтому события подписчику отправляются по одному и в порядке постановки.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<SseEmitter.SseEventBuilder> queue = new ArrayDeque<>();
+        // доступны под блокировкой this
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Ставит событие в очередь. Если очередь переполнена и ограничение не снято (unbounded), подписка закрывается.
+         */
+        void offer(SseEmitter.SseEventBuilder event, boolean unbounded) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                if (unbounded || queue.size() < subscriberQueueSize) {
+                    queue.addLast(event);
+                    if (!draining) {
+                        draining = true;
+                        senders.execute(this::drain);
+                    }
+                    return;
+                }
+            }
+            log.info("Menu change feed subscriber does not keep up, {} events queued; disconnecting", subscriberQueueSize);
+            dropped.increment();
+            fail(new IllegalStateException("Menu change feed subscriber queue overflow"));
+        }
+
+        synchronized boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+                notifyAll();
+            }
+            subscribers.remove(emitter, this);
+        }
+
+        synchronized void awaitIdle() throws InterruptedException, TimeoutException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (draining && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("Menu change feed subscriber did not drain its queue");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                SseEmitter.SseEventBuilder event;
+                synchronized (this) {
+                    event = queue.pollFirst();
+                    if (event == null || closed) {
+                        draining = false;
+                        notifyAll();
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    // клиент отключился или подписка уже завершена
+                    log.debug("Failed to send menu change event, removing subscriber: {}", e.getMessage());
+                    fail(e);
+                    synchronized (this) {
+                        draining = false;
+                        notifyAll();
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Завершение подписки ждет, пока закончится текущая отправка этому подписчику,
+         * поэтому выполняется в пуле senders, а не в потоке ленты.
+         */
+        private void fail(Exception e) {
+            close();
+            senders.execute(() -> emitter.completeWithError(e));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package ru.javaops.cloudjava.menuservice.service.idempotency;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Хранит результаты запросов, переданных с заголовком Idempotency-Key, чтобы повторный запрос
+ * с тем же ключом получал исходный результат без обращения к БД.
+ * <p>
+ * Ключи принадлежат клиенту (аутентифицированному пользователю): одинаковые ключи разных клиентов не пересекаются.
+ * Результат хранится в течение ttl; при превышении maxKeys вытесняются самые старые завершенные запросы.
+ * Запросы, которые еще выполняются, не вытесняются, иначе их повтор выполнился бы второй раз; если все
+ * хранимые ключи принадлежат выполняющимся запросам, новый ключ отклоняется со статусом 503.
+ * Повтор, пришедший во время выполнения исходного запроса, дожидается его результата.
+ * Ошибки {@link MenuServiceException} (например, конфликт названий) воспроизводятся так же, как успешный результат,
+ * а после остальных ошибок ключ освобождается, чтобы повтор мог выполнить запрос заново.
+ * Хранилище локально для экземпляра сервиса.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeyStore {
+
+    private final long ttlNanos;
+    private final int maxKeys;
+    // порядок вставки совпадает с порядком истечения срока хранения, так как ttl у всех ключей одинаковый
+    private final LinkedHashMap<ClientKey, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyKeyStore(@Value("${menu.idempotency.ttl:24h}") Duration ttl,
+                               @Value("${menu.idempotency.max-keys:10000}") int maxKeys) {
+        this.ttlNanos = ttl.toNanos();
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Выполняет action, если клиент передает ключ впервые, иначе возвращает сохраненный результат.
+     * Если ключ уже использовался с другим телом запроса, выбрасывает исключение со статусом 422.
+     *
+     * @param client имя аутентифицированного пользователя, передавшего ключ
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String client, String key, Object request, Supplier<T> action) {
+        var clientKey = new ClientKey(client, key);
+        var entry = new Entry(request, new CompletableFuture<>(), System.nanoTime() + ttlNanos);
+        Entry existing;
+        synchronized (entries) {
+            evictExpired(System.nanoTime());
+            existing = entries.putIfAbsent(clientKey, entry);
+            if (existing == null && entries.size() > maxKeys && !evictEldestCompleted()) {
+                entries.remove(clientKey);
+                log.warn("Rejecting Idempotency-Key {}: all {} stored keys belong to requests in progress", key, maxKeys);
+                throw new MenuServiceException("Too many requests with Idempotency-Key are in progress.",
+                        HttpStatus.SERVICE_UNAVAILABLE);
+            }
+        }
+        if (existing != null) {
+            return (T) replay(key, request, existing);
+        }
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (MenuServiceException e) {
+            entry.result.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException e) {
+            synchronized (entries) {
+                entries.remove(clientKey, entry);
+            }
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    private Object replay(String key, Object request, Entry existing) {
+        if (!existing.request.equals(request)) {
+            var msg = String.format("Idempotency-Key %s has already been used with a different request.", key);
+            throw new MenuServiceException(msg, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        log.info("Replaying result of request with Idempotency-Key {}", key);
+        try {
+            return existing.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean evictEldestCompleted() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().result.isDone()) {
+                iterator.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<ClientKey, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && iterator.next().getValue().expiresAt - now <= 0) {
+            iterator.remove();
+        }
+    }
+
+    private record ClientKey(String client, String key) {
+    }
+
+    private record Entry(Object request, CompletableFuture<Object> result, long expiresAt) {
+    }
+}
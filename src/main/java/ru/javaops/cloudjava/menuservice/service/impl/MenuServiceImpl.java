@@ -1,57 +1,158 @@
 package ru.javaops.cloudjava.menuservice.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.javaops.cloudjava.menuservice.dto.*;
 import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
 import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
 import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuItemLoader;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuNameIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuSnapshotCache;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.idempotency.IdempotencyKeyStore;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
-import ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemTombstone;
 import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class MenuServiceImpl implements MenuService {
 
     private final MenuItemMapper mapper;
     private final MenuItemRepository repository;
+    private final MenuSnapshotCache snapshotCache;
+    private final MenuPriceIndex priceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyKeyStore idempotencyKeys;
+    private final MenuNameIndex nameIndex;
+    private final MenuItemLoader itemLoader;
 
+    /**
+     * Существующее название определяется по пустому результату INSERT ... ON CONFLICT DO NOTHING,
+     * а не по ошибке нарушения уникальности, поэтому повторные попытки создать блюдо не приводят к ошибкам в БД.
+     * Метод вызывается и изнутри сервиса, поэтому транзакция открывается через transactionTemplate:
+     * событие должно публиковаться в транзакции вставки, чтобы запись в outbox коммитилась вместе с блюдом.
+     */
     @Override
     public MenuItemDto createMenuItem(CreateMenuRequest dto) {
-        var menu = mapper.toDomain(dto);
+        return transactionTemplate.execute(status -> {
+            var created = repository.insertIfAbsent(mapper.toDomain(dto))
+                    .map(mapper::toDto)
+                    .orElseThrow(() -> {
+                        var msg = String.format("Failed to create MenuItem: %s. Reason: Item with name %s already exists.", dto, dto.getName());
+                        return new MenuServiceException(msg, HttpStatus.CONFLICT);
+                    });
+            eventPublisher.publishEvent(new MenuItemChangedEvent(MenuItemChangedEvent.Type.CREATED, created));
+            return created;
+        });
+    }
+
+    @Override
+    public MenuItemDto createMenuItem(CreateMenuRequest dto, String client, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createMenuItem(dto);
+        }
+        return idempotencyKeys.execute(client, idempotencyKey, dto, () -> createMenuItem(dto));
+    }
+
+    /**
+     * Блюда, название которых уже есть в БД или повторяется в запросе, отсеиваются заранее одним запросом,
+     * остальные вставляются пачками в одной транзакции. Если блюдо с тем же названием успели создать
+     * параллельно и транзакция откатилась, блюда вставляются по одному, чтобы определить конфликтующие.
+     */
+    @Override
+    public BulkCreateMenuResponse createMenuItems(BulkCreateMenuRequest request) {
+        var requests = request.getItems();
+        List<BulkItemError> failed = new ArrayList<>();
+        Set<String> existing = repository.findExistingNames(
+                requests.stream().map(CreateMenuRequest::getName).collect(Collectors.toSet())
+        );
+        Set<String> seen = new HashSet<>();
+        Map<Integer, MenuItem> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            var name = requests.get(i).getName();
+            if (existing.contains(name)) {
+                failed.add(new BulkItemError(i, name, "Item with name %s already exists.".formatted(name)));
+            } else if (!seen.add(name)) {
+                failed.add(new BulkItemError(i, name, "Item with name %s is duplicated in request.".formatted(name)));
+            } else {
+                candidates.put(i, mapper.toDomain(requests.get(i)));
+            }
+        }
+
+        List<MenuItemDto> created;
         try {
-            return mapper.toDto(repository.save(menu));
+            created = transactionTemplate.execute(status -> {
+                var items = List.copyOf(candidates.values());
+                repository.insertAll(items);
+                var dtos = mapper.toDtoList(items);
+                dtos.forEach(dto -> eventPublisher.publishEvent(new MenuItemChangedEvent(MenuItemChangedEvent.Type.CREATED, dto)));
+                return dtos;
+            });
         } catch (DataIntegrityViolationException e) {
-            var msg = String.format("Failed to create MenuItem: %s. Reason: Item with name %s already exists.", dto, dto.getName());
-            throw new MenuServiceException(msg, HttpStatus.CONFLICT);
+            log.warn("Batch insert of {} MenuItems failed, falling back to inserting one by one. Reason: {}",
+                    candidates.size(), e.getMessage());
+            created = new ArrayList<>();
+            for (var candidate : candidates.entrySet()) {
+                var dto = requests.get(candidate.getKey());
+                try {
+                    created.add(createMenuItem(dto));
+                } catch (MenuServiceException ex) {
+                    failed.add(new BulkItemError(candidate.getKey(), dto.getName(), ex.getMessage()));
+                }
+            }
         }
+        failed.sort(Comparator.comparingInt(BulkItemError::getIndex));
+        return BulkCreateMenuResponse.builder()
+                .created(created)
+                .failed(failed)
+                .build();
     }
 
+    @Transactional
     @Override
     public void deleteMenuItem(Long id) {
-        repository.deleteById(id);
+        // так же, как и deleteById, сначала загружаем блюдо - его категория нужна подписчикам события
+        repository.findById(id).ifPresent(menu -> {
+            repository.delete(menu);
+            eventPublisher.publishEvent(new MenuItemChangedEvent(MenuItemChangedEvent.Type.DELETED, mapper.toDto(menu)));
+        });
     }
 
     @Transactional
     @Override
     public MenuItemDto updateMenuItem(Long id, UpdateMenuRequest update) {
+        return updateMenuItem(id, update, null);
+    }
+
+    /**
+     * Новое состояние блюда возвращается тем же запросом, который его обновляет.
+     * Причина неудачи (блюда нет или изменилась его версия) выясняется отдельным запросом только при неудаче.
+     */
+    @Transactional
+    @Override
+    public MenuItemDto updateMenuItem(Long id, UpdateMenuRequest update, Long expectedVersion) {
         try {
-            int updateCount = repository.updateMenu(id, update);
-            if (updateCount == 0) {
-                var msg = String.format("MenuItem with id=%d not found.", id);
-                throw new MenuServiceException(msg, HttpStatus.NOT_FOUND);
-            }
-            return getMenu(id);
+            var updated = repository.updateMenu(id, update, expectedVersion)
+                    .map(mapper::toDto)
+                    .orElseThrow(() -> updateFailed(id, expectedVersion));
+            eventPublisher.publishEvent(new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, updated));
+            return updated;
         } catch (DataIntegrityViolationException ex) {
             var msg = String.format("Failed to update MenuItem with ID: %d. Reason: Item with name %s already exists.",
                     id, update.getName());
@@ -59,35 +160,183 @@ public class MenuServiceImpl implements MenuService {
         }
     }
 
+    private MenuServiceException updateFailed(Long id, Long expectedVersion) {
+        if (expectedVersion != null && repository.existsById(id)) {
+            var msg = String.format("Failed to update MenuItem with id=%d. Reason: version %d is outdated.", id, expectedVersion);
+            return new MenuServiceException(msg, HttpStatus.PRECONDITION_FAILED);
+        }
+        var msg = String.format("MenuItem with id=%d not found.", id);
+        return new MenuServiceException(msg, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Все обновления выполняются в одной транзакции: при конфликте названий не применяется ни одно из них.
+     * Блюда из запроса читаются одним запросом по списку id. Событие об изменении публикуется только для
+     * блюд, которые действительно обновлены; блюда без изменяемых атрибутов возвращаются в списке unchanged.
+     */
+    @Transactional
+    @Override
+    public BulkUpdateMenuResponse updateMenuItems(BulkUpdateMenuRequest request) {
+        var updates = request.getItems();
+        try {
+            Set<Long> updatedIds = repository.updateMenus(updates);
+            var found = mapper.toDtoList(repository.findAllById(updates.keySet()));
+            var updated = found.stream().filter(dto -> updatedIds.contains(dto.getId())).toList();
+            updated.forEach(dto -> eventPublisher.publishEvent(new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, dto)));
+            Set<Long> foundIds = found.stream().map(MenuItemDto::getId).collect(Collectors.toSet());
+            var unchanged = foundIds.stream().filter(id -> !updatedIds.contains(id)).sorted().toList();
+            var notFound = updates.keySet().stream().filter(id -> !foundIds.contains(id)).sorted().toList();
+            return BulkUpdateMenuResponse.builder()
+                    .updated(updated)
+                    .unchanged(unchanged)
+                    .notFound(notFound)
+                    .build();
+        } catch (DataIntegrityViolationException ex) {
+            var msg = String.format("Failed to update MenuItems with IDs: %s. Reason: Item names must be unique.", updates.keySet());
+            throw new MenuServiceException(msg, HttpStatus.CONFLICT);
+        }
+    }
+
     @Override
     public MenuItemDto getMenu(Long id) {
-        return repository.findById(id)
-                .map(mapper::toDto)
-                .orElseThrow(() -> {
-                    var msg = String.format("MenuItem with id=%d not found.", id);
-                    return new MenuServiceException(msg, HttpStatus.NOT_FOUND);
-                });
+        return itemLoader.findMenu(id)
+                .orElseThrow(() -> menuNotFound(id));
+    }
+
+    @Override
+    public MenuItemDto getMenu(Long id, Set<MenuField> fields) {
+        return repository.findMenu(id, fields)
+                .orElseThrow(() -> menuNotFound(id));
+    }
+
+    private static MenuServiceException menuNotFound(Long id) {
+        var msg = String.format("MenuItem with id=%d not found.", id);
+        return new MenuServiceException(msg, HttpStatus.NOT_FOUND);
     }
 
     @Override
     public List<MenuItemDto> getMenusFor(Category category, SortBy sortBy) {
-        return mapper.toDtoList(repository.getMenusFor(category, sortBy));
+        return snapshotCache.getMenusFor(category, sortBy);
+    }
+
+    @Override
+    public MenuItemPage getMenusFor(Category category, SortBy sortBy, String cursor, int limit) {
+        var after = cursor == null ? null : PageCursor.decode(cursor, sortBy);
+        // запрашиваем на одно блюдо больше, чтобы понять, есть ли следующая страница
+        var items = mapper.toDtoList(repository.getMenusFor(category, sortBy, after, limit + 1));
+        return toPage(items, sortBy, limit);
+    }
+
+    @Override
+    public List<MenuItemDto> getMenusFor(Category category, SortBy sortBy, Set<MenuField> fields) {
+        return repository.getMenusFor(category, sortBy, null, null, fields);
+    }
+
+    @Override
+    public MenuItemPage getMenusFor(Category category, SortBy sortBy, String cursor, int limit, Set<MenuField> fields) {
+        var after = cursor == null ? null : PageCursor.decode(cursor, sortBy);
+        Set<MenuField> selected = EnumSet.copyOf(fields);
+        selected.add(MenuField.ID);
+        selected.add(sortBy.getField());
+        return toPage(repository.getMenusFor(category, sortBy, after, limit + 1, selected), sortBy, limit);
+    }
+
+    private static MenuItemPage toPage(List<MenuItemDto> items, SortBy sortBy, int limit) {
+        if (items.size() <= limit) {
+            return new MenuItemPage(items, null);
+        }
+        var page = items.subList(0, limit);
+        return new MenuItemPage(page, sortBy.cursorAfter(page.get(limit - 1)).encode());
+    }
+
+    @Override
+    public List<MenuItemDto> searchMenus(String query, Category category, SortBy sortBy, int limit) {
+        return mapper.toDtoList(repository.searchMenus(query.trim(), category, sortBy, limit));
+    }
+
+    @Override
+    public List<MenuItemDto> filterMenus(MenuFilter filter, SortBy sortBy, int limit) {
+        if (filter.getMinCalories() != null && filter.getMaxCalories() != null
+                && filter.getMinCalories() > filter.getMaxCalories()) {
+            var msg = String.format("Failed to filter MenuItems. Reason: minCalories %d is greater than maxCalories %d.",
+                    filter.getMinCalories(), filter.getMaxCalories());
+            throw new MenuServiceException(msg, HttpStatus.BAD_REQUEST);
+        }
+        return mapper.toDtoList(repository.filterMenus(filter, sortBy, limit));
+    }
+
+    @Override
+    public List<MenuSuggestion> suggestMenus(String prefix, int limit) {
+        return nameIndex.suggest(prefix, limit);
     }
 
     @Override
     public OrderMenuResponse getMenusForOrder(OrderMenuRequest request) {
-        Map<String, MenuItemProjection> nameToProjection = repository.getMenuInfoForNames(request.getMenuNames()).stream()
-                .collect(Collectors.toMap(MenuItemProjection::getName, Function.identity()));
-
-        List<MenuInfo> menuInfos = new ArrayList<>();
-        for(String name: request.getMenuNames()) {
-            if (nameToProjection.containsKey(name)) {
-                var projection = nameToProjection.get(name);
-                menuInfos.add(new MenuInfo(projection.getName(), projection.getPrice(), true));
+        var index = priceIndex.snapshot();
+        List<MenuInfo> menuInfos = new ArrayList<>(request.getMenuNames().size());
+        for (String name : request.getMenuNames()) {
+            var entry = index.find(name);
+            if (entry != null) {
+                menuInfos.add(new MenuInfo(name, entry.price(), true));
             } else {
                 menuInfos.add(new MenuInfo(name, null, false));
             }
         }
         return OrderMenuResponse.builder().menuInfos(menuInfos).build();
     }
-}
\ No newline at end of file
+
+    @Transactional(readOnly = true)
+    @Override
+    public void exportMenus(Consumer<MenuItemDto> consumer) {
+        repository.forEachMenu(menu -> consumer.accept(mapper.toDto(menu)));
+    }
+
+    /**
+     * Созданные и измененные блюда и удаленные блюда читаются из разных таблиц и объединяются
+     * в общем порядке (номер транзакции, id). Если все изменения до границы завершенных транзакций
+     * поместились в ответ, следующий токен указывает на эту границу, чтобы следующий запрос начинал с нее.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public MenuChangesResponse getChanges(String since, int limit) {
+        var after = since == null ? ChangeCursor.START : ChangeCursor.decode(since);
+        long horizon = repository.getChangeHorizon();
+        // запрашиваем на одно изменение больше, чтобы понять, есть ли еще изменения
+        var changed = repository.getChangedMenus(after, horizon, limit + 1);
+        var deleted = repository.getDeletedMenus(after, horizon, limit + 1);
+        List<MenuItemDto> items = new ArrayList<>();
+        List<DeletedMenuItemDto> deletedItems = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        var last = after;
+        while (i + j < limit && (i < changed.size() || j < deleted.size())) {
+            var nextChanged = i < changed.size() ? positionOf(changed.get(i)) : null;
+            var nextDeleted = j < deleted.size() ? positionOf(deleted.get(j)) : null;
+            if (nextDeleted == null || (nextChanged != null && nextChanged.compareTo(nextDeleted) < 0)) {
+                items.add(mapper.toDto(changed.get(i++)));
+                last = nextChanged;
+            } else {
+                deletedItems.add(mapper.toDeletedDto(deleted.get(j++)));
+                last = nextDeleted;
+            }
+        }
+        boolean hasMore = i < changed.size() || j < deleted.size();
+        if (!hasMore && last.getChangeXid() < horizon) {
+            last = new ChangeCursor(horizon, 0);
+        }
+        return MenuChangesResponse.builder()
+                .items(items)
+                .deleted(deletedItems)
+                .next(last.encode())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    private static ChangeCursor positionOf(MenuItem menu) {
+        return new ChangeCursor(menu.getChangeXid(), menu.getId());
+    }
+
+    private static ChangeCursor positionOf(MenuItemTombstone tombstone) {
+        return new ChangeCursor(tombstone.getChangeXid(), tombstone.getId());
+    }
+}
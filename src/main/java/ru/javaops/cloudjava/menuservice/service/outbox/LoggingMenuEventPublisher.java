@@ -0,0 +1,21 @@
+package ru.javaops.cloudjava.menuservice.service.outbox;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+
+import java.util.List;
+
+/**
+ * Публикатор по умолчанию: записывает события в лог, чтобы сервис работал без брокера сообщений.
+ */
+@Slf4j
+public class LoggingMenuEventPublisher implements MenuEventPublisher {
+
+    @Override
+    public void publish(List<MenuOutboxEvent> events) {
+        for (MenuOutboxEvent event : events) {
+            log.info("Menu change event id={}, type={}, menuItemId={}: {}",
+                    event.getId(), event.getEventType(), event.getMenuItemId(), event.getPayload());
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.javaops.cloudjava.menuservice.service.outbox;
+
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+
+import java.util.List;
+
+/**
+ * Публикует события об изменениях блюд, разобранные из outbox, во внешнюю систему (брокер сообщений и т.п.).
+ * Чтобы подключить брокер, достаточно объявить бин, реализующий этот интерфейс;
+ * если бина нет, используется {@link LoggingMenuEventPublisher}.
+ */
+public interface MenuEventPublisher {
+
+    /**
+     * Публикует пачку событий в порядке их записи. Исключение откатывает транзакцию relay:
+     * события остаются в outbox и будут опубликованы повторно, поэтому получатели должны быть готовы к дублям.
+     */
+    void publish(List<MenuOutboxEvent> events);
+}
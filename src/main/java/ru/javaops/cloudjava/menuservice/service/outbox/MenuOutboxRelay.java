@@ -0,0 +1,103 @@
+package ru.javaops.cloudjava.menuservice.service.outbox;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuOutboxRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Фоновая публикация событий из outbox. События разбираются пачками: каждая пачка блокируется
+ * SELECT ... FOR UPDATE SKIP LOCKED, передается {@link MenuEventPublisher} и удаляется в той же транзакции.
+ * Если публикация не удалась, транзакция откатывается и пачка будет опубликована при следующем запуске
+ * (доставка "хотя бы один раз").
+ * <p>
+ * Порядок публикации совпадает с порядком id событий. При нескольких экземплярах сервиса пачки публикуются
+ * параллельно, поэтому строгий порядок событий одного блюда не гарантируется - получатели могут использовать version блюда.
+ */
+@Slf4j
+@Component
+public class MenuOutboxRelay {
+
+    private final MenuOutboxRepository repository;
+    private final TransactionTemplate transactionTemplate;
+    private final MenuEventPublisher publisher;
+    private final int batchSize;
+    private final boolean enabled;
+    private final Counter relayed;
+    private final Timer lag;
+
+    public MenuOutboxRelay(MenuOutboxRepository repository,
+                           TransactionTemplate transactionTemplate,
+                           ObjectProvider<MenuEventPublisher> publisher,
+                           MeterRegistry registry,
+                           @Value("${menu.outbox.batch-size:100}") int batchSize,
+                           @Value("${menu.outbox.relay-enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.transactionTemplate = transactionTemplate;
+        this.publisher = publisher.getIfAvailable(LoggingMenuEventPublisher::new);
+        this.batchSize = batchSize;
+        this.enabled = enabled;
+        this.relayed = Counter.builder("menu.outbox.relayed")
+                .description("Number of menu change events published from the outbox")
+                .register(registry);
+        this.lag = Timer.builder("menu.outbox.lag")
+                .description("Time between writing a menu change event to the outbox and publishing it")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${menu.outbox.poll-interval-ms:1000}")
+    public void relayScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            relayPending();
+        } catch (RuntimeException e) {
+            log.warn("Failed to relay menu change events from the outbox, will retry. Reason: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Публикует все накопившиеся события и возвращает их количество.
+     */
+    public int relayPending() {
+        int total = 0;
+        int published;
+        do {
+            published = relayBatch();
+            total += published;
+        } while (published == batchSize);
+        return total;
+    }
+
+    private int relayBatch() {
+        List<MenuOutboxEvent> events = transactionTemplate.execute(status -> {
+            var batch = repository.lockOldest(batchSize);
+            if (!batch.isEmpty()) {
+                publisher.publish(batch);
+                repository.deleteAllByIdInBatch(batch.stream().map(MenuOutboxEvent::getId).toList());
+            }
+            return batch;
+        });
+        if (events == null || events.isEmpty()) {
+            return 0;
+        }
+        var now = LocalDateTime.now();
+        for (MenuOutboxEvent event : events) {
+            lag.record(Duration.between(event.getCreatedAt(), now));
+        }
+        relayed.increment(events.size());
+        return events.size();
+    }
+}
@@ -0,0 +1,44 @@
+package ru.javaops.cloudjava.menuservice.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuOutboxRepository;
+
+/**
+ * Записывает событие об изменении блюда в outbox в момент публикации, то есть в транзакции самого изменения:
+ * событие сохраняется тогда и только тогда, когда коммитится изменение. Публикация во внешнюю систему
+ * выполняется позже {@link MenuOutboxRelay} и не увеличивает время ответа на запрос изменения.
+ */
+@Component
+@RequiredArgsConstructor
+public class MenuOutboxWriter {
+
+    private final MenuOutboxRepository repository;
+    private final ObjectMapper objectMapper;
+
+    @EventListener(condition = "!#event.remote")
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        var item = event.getItem();
+        repository.save(MenuOutboxEvent.builder()
+                .eventType(event.getType().name())
+                .menuItemId(item.getId())
+                .payload(serialize(event))
+                .build());
+    }
+
+    private String serialize(MenuItemChangedEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event.getItem());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize menu change event to JSON", e);
+        }
+    }
+}
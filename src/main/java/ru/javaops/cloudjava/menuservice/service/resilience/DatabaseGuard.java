@@ -0,0 +1,106 @@
+package ru.javaops.cloudjava.menuservice.service.resilience;
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Защита чтений меню от деградации БД. Запросы к БД выполняются через circuit breaker: когда доля ошибок
+ * или медленных запросов превышает порог, breaker размыкается, и запросы сразу завершаются ошибкой, не занимая
+ * соединения и потоки. Вместо ошибки читатель получает последние известные данные (stale-while-revalidate),
+ * а ответ отмечается {@link StaleResponse}. Если последних известных данных нет, возвращается 503.
+ */
+@Slf4j
+@Component
+public class DatabaseGuard {
+
+    private final CircuitBreaker breaker;
+    private final Counter staleServed;
+    private final List<Runnable> recoveryListeners = new CopyOnWriteArrayList<>();
+
+    public DatabaseGuard(CircuitBreaker databaseCircuitBreaker, MeterRegistry registry) {
+        this.breaker = databaseCircuitBreaker;
+        this.staleServed = Counter.builder("menu.stale.responses")
+                .description("Number of reads served from last known data because the database was unavailable")
+                .register(registry);
+        breaker.getEventPublisher().onStateTransition(event -> {
+            var transition = event.getStateTransition();
+            log.warn("Menu database circuit breaker changed state: {}", transition);
+            if (transition.getToState() == CircuitBreaker.State.CLOSED) {
+                recoveryListeners.forEach(Runnable::run);
+            }
+        });
+    }
+
+    /**
+     * Ошибка из-за истекшего крайнего срока клиента ({@link RequestDeadline}) не считается признаком деградации БД,
+     * а истекший срок общей загрузки - считается.
+     */
+    public static boolean isDatabaseFailure(Throwable e) {
+        if (RequestDeadline.isRequestExpired()) {
+            return false;
+        }
+        return e instanceof CallNotPermittedException
+                || e instanceof DataAccessException
+                || e instanceof TransactionException
+                || e instanceof PersistenceException;
+    }
+
+    /**
+     * Выполняет запрос к БД через circuit breaker.
+     */
+    public <T> T call(Supplier<T> query) {
+        return breaker.executeSupplier(query);
+    }
+
+    /**
+     * Выполняет чтение, а если БД недоступна - возвращает последние известные данные.
+     *
+     * @param lastKnown возвращает последние известные данные или null, если их нет
+     */
+    public <T> T withFallback(Supplier<T> read, Supplier<T> lastKnown) {
+        try {
+            return read.get();
+        } catch (RuntimeException e) {
+            if (!isDatabaseFailure(e)) {
+                throw e;
+            }
+            T stale = lastKnown.get();
+            if (stale == null) {
+                var msg = String.format("Menu database is unavailable. Reason: %s", e.getMessage());
+                throw new MenuServiceException(msg, HttpStatus.SERVICE_UNAVAILABLE);
+            }
+            log.debug("Serving last known menu data, database is unavailable: {}", e.getMessage());
+            staleServed.increment();
+            StaleResponse.mark();
+            return stale;
+        }
+    }
+
+    /**
+     * true, пока breaker разомкнут или выполняет пробные запросы.
+     */
+    public boolean isDegraded() {
+        return breaker.getState() != CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * Регистрирует действие, выполняемое, когда breaker снова замыкается после деградации БД.
+     */
+    public void onRecovered(Runnable listener) {
+        recoveryListeners.add(listener);
+    }
+}
@@ -0,0 +1,66 @@
+package ru.javaops.cloudjava.menuservice.service.resilience;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuSnapshotCache;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Фоновое обновление данных, отданных из последних известных во время деградации БД.
+ * Пока breaker не замкнут, периодически перестраивает снимки категорий и индекс цен - эти запросы
+ * служат пробными и замыкают breaker, как только БД восстановится, даже если запросов клиентов нет.
+ * После восстановления публикует {@link MenuResyncEvent}: версии каталога перечитываются из БД, поэтому клиенты
+ * не получат 304 на ETag устаревшего ответа, если данные успели измениться, - и в фоне заново загружает кэши.
+ */
+@Slf4j
+@Component
+public class StaleDataRefresher {
+
+    private final DatabaseGuard guard;
+    private final MenuSnapshotCache snapshotCache;
+    private final MenuPriceIndex priceIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AtomicBoolean warmUpRequested = new AtomicBoolean();
+
+    public StaleDataRefresher(DatabaseGuard guard,
+                              MenuSnapshotCache snapshotCache,
+                              MenuPriceIndex priceIndex,
+                              ApplicationEventPublisher eventPublisher) {
+        this.guard = guard;
+        this.snapshotCache = snapshotCache;
+        this.priceIndex = priceIndex;
+        this.eventPublisher = eventPublisher;
+        guard.onRecovered(this::onRecovered);
+    }
+
+    @Scheduled(fixedDelayString = "${menu.db-breaker.refresh-interval-ms:5000}")
+    public void refreshScheduled() {
+        if (guard.isDegraded() || warmUpRequested.getAndSet(false)) {
+            refresh();
+        }
+    }
+
+    void onRecovered() {
+        log.info("Menu database recovered, refreshing local caches");
+        eventPublisher.publishEvent(new MenuResyncEvent("database recovered"));
+        warmUpRequested.set(true);
+    }
+
+    private void refresh() {
+        try {
+            for (Category category : Category.values()) {
+                snapshotCache.getMenusFor(category, SortBy.AZ);
+            }
+            priceIndex.snapshot();
+        } catch (RuntimeException e) {
+            log.debug("Failed to refresh menu caches: {}", e.getMessage());
+        }
+    }
+}
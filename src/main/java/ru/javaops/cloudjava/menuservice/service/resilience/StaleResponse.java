@@ -0,0 +1,29 @@
+package ru.javaops.cloudjava.menuservice.service.resilience;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Отметка о том, что текущий HTTP запрос обслужен последними известными данными, а не данными из БД.
+ * Отмеченный ответ получает заголовок {@link #HEADER}. Вне HTTP запроса отметка не сохраняется.
+ */
+public final class StaleResponse {
+
+    public static final String HEADER = "X-Menu-Stale";
+    private static final String ATTRIBUTE = StaleResponse.class.getName();
+
+    private StaleResponse() {
+    }
+
+    public static void mark() {
+        var attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null) {
+            attributes.setAttribute(ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    public static boolean isMarked() {
+        var attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null && attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+}
@@ -0,0 +1,79 @@
+package ru.javaops.cloudjava.menuservice.storage.datasource;
+
+import org.postgresql.jdbc.PgStatement;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Ограничивает время выполнения SQL запросов крайним сроком текущего запроса {@link RequestDeadline}.
+ * Каждому создаваемому statement устанавливается query timeout, равный оставшемуся времени: по его истечении
+ * драйвер PostgreSQL отменяет запрос на сервере. Если срок уже прошел, statement не создается и запрос к БД
+ * не отправляется. Без крайнего срока statement не изменяется.
+ */
+public class DeadlineAwareDataSource extends DelegatingDataSource {
+
+    private static final Set<String> STATEMENT_FACTORIES = Set.of("createStatement", "prepareStatement", "prepareCall");
+
+    public DeadlineAwareDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(super.getConnection(username, password));
+    }
+
+    private static Connection proxy(Connection target) {
+        return (Connection) Proxy.newProxyInstance(
+                DeadlineAwareDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new DeadlineInvocationHandler(target));
+    }
+
+    private record DeadlineInvocationHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            var remaining = RequestDeadline.remainingMillis();
+            boolean statementFactory = STATEMENT_FACTORIES.contains(method.getName());
+            if (statementFactory && remaining.isPresent() && remaining.getAsLong() <= 0) {
+                throw new SQLTimeoutException("Request deadline exceeded before the query was sent");
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (statementFactory && remaining.isPresent()) {
+                applyTimeout((Statement) result, remaining.getAsLong());
+            }
+            return result;
+        }
+
+        private static void applyTimeout(Statement statement, long remainingMillis) throws SQLException {
+            if (statement.isWrapperFor(PgStatement.class)) {
+                statement.unwrap(PgStatement.class).setQueryTimeoutMs(remainingMillis);
+            } else {
+                // стандартный JDBC позволяет задать таймаут только в секундах
+                statement.setQueryTimeout((int) Math.max(1, (remainingMillis + 999) / 1000));
+            }
+        }
+    }
+}
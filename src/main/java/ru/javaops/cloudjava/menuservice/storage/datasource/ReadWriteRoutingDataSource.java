@@ -0,0 +1,64 @@
+package ru.javaops.cloudjava.menuservice.storage.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Направляет соединения транзакций на запись в основную БД, а транзакции только для чтения
+ * ({@code @Transactional(readOnly = true)}) и чтения вне транзакции - в пул реплики.
+ * <p>
+ * Признак readOnly устанавливается менеджером транзакций после получения соединения, поэтому источник
+ * должен использоваться через {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}:
+ * тогда соединение выбирается при первом запросе к БД, когда признак уже известен.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWrites readYourWrites;
+    private final Map<Target, Counter> routed;
+
+    public ReadWriteRoutingDataSource(DataSource primary,
+                                      DataSource replica,
+                                      ReadYourWrites readYourWrites,
+                                      MeterRegistry registry) {
+        this.readYourWrites = readYourWrites;
+        this.routed = Map.of(
+                Target.PRIMARY, counter(registry, Target.PRIMARY),
+                Target.REPLICA, counter(registry, Target.REPLICA)
+        );
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        var target = currentTarget();
+        routed.get(target).increment();
+        return target;
+    }
+
+    private Target currentTarget() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        return readYourWrites.isPrimaryRequired() ? Target.PRIMARY : Target.REPLICA;
+    }
+
+    private static Counter counter(MeterRegistry registry, Target target) {
+        return Counter.builder("menu.datasource.connections.routed")
+                .description("Number of JDBC connections obtained from the primary database or its replica")
+                .tag("target", target.name().toLowerCase())
+                .register(registry);
+    }
+}
@@ -0,0 +1,60 @@
+package ru.javaops.cloudjava.menuservice.storage.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.event.MenuResyncEvent;
+
+import java.time.Duration;
+
+/**
+ * Окно "чтение своих записей": в течение read-your-writes-window после коммита изменения меню
+ * чтения этого экземпляра сервиса выполняются на основной БД, а не на реплике, которая может отставать.
+ * Так следующее за изменением чтение (например, после updateMenuItem - перестроение сброшенных кэшей
+ * и GET клиента) не вернет данные до изменения. Нулевое окно отключает эту возможность.
+ */
+@Component
+public class ReadYourWrites {
+
+    private final long windowNanos;
+    private volatile long primaryUntil;
+
+    public ReadYourWrites(@Value("${menu.datasource.read-your-writes-window:5s}") Duration window) {
+        this.windowNanos = window.toNanos();
+        this.primaryUntil = System.nanoTime();
+    }
+
+    // окно открывается до сброса кэшей, чтобы их перестроение уже читало основную БД
+    @Order(MenuItemChangedEvent.ROUTING_ORDER)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMenuItemChanged(MenuItemChangedEvent event) {
+        onWrite();
+    }
+
+    // пропущенные изменения других экземпляров могли еще не дойти до реплики
+    @Order(MenuItemChangedEvent.ROUTING_ORDER)
+    @EventListener
+    public void onResync(MenuResyncEvent event) {
+        onWrite();
+    }
+
+    public boolean isPrimaryRequired() {
+        return System.nanoTime() - primaryUntil < 0;
+    }
+
+    /**
+     * Закрывает окно. Используется в тестах.
+     */
+    public void reset() {
+        primaryUntil = System.nanoTime();
+    }
+
+    private void onWrite() {
+        if (windowNanos > 0) {
+            primaryUntil = System.nanoTime() + windowNanos;
+        }
+    }
+}
@@ -4,11 +4,13 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.Serializable;
 import java.util.List;
 
+// хранится в кэше второго уровня Hibernate в составе разобранного состояния MenuItem
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
-public class IngredientCollection {
+public class IngredientCollection implements Serializable {
     private List<Ingredient> ingredients;
 }
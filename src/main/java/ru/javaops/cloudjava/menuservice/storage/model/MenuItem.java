@@ -3,6 +3,8 @@ package ru.javaops.cloudjava.menuservice.storage.model;
 import io.hypersistence.utils.hibernate.type.json.JsonBinaryType;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -21,9 +23,17 @@ import java.time.LocalDateTime;
 @ToString
 @Table(name = "menu_items")
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = MenuItem.CACHE_REGION)
 public class MenuItem {
+    public static final String TABLE = "menu_items";
+    // регион кэша второго уровня с блюдами
+    public static final String CACHE_REGION = "menu-items";
+    // регион кэша запросов со списками блюд категорий
+    public static final String CATEGORY_QUERY_CACHE_REGION = "menu-items-by-category";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menu_items_id_seq")
+    @SequenceGenerator(name = "menu_items_id_seq", sequenceName = "menu_items_id_seq", allocationSize = 50)
     private Long id;
     @Column(name = "name", nullable = false)
     private String name;
@@ -51,6 +61,12 @@ public class MenuItem {
     @Type(JsonBinaryType.class)
     @Column(name = "ingredient_collection", columnDefinition = "jsonb")
     private IngredientCollection ingredientCollection;
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+    // номер транзакции, последней изменившей блюдо; заполняется триггером в БД
+    @Column(name = "change_xid", insertable = false, updatable = false)
+    private Long changeXid;
 
     /**
      * Переопределяем equals и hashCode
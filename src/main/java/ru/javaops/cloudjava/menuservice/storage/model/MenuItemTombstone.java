@@ -0,0 +1,30 @@
+package ru.javaops.cloudjava.menuservice.storage.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись об удаленном блюде. Создается триггером в БД при удалении строки из menu_items.
+ */
+@Getter
+@NoArgsConstructor
+@ToString
+@Immutable
+@Table(name = "menu_item_tombstones")
+@Entity
+public class MenuItemTombstone {
+    @Id
+    private Long id;
+    @Column(name = "category", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Category category;
+    @Column(name = "change_xid", nullable = false)
+    private Long changeXid;
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,35 @@
+package ru.javaops.cloudjava.menuservice.storage.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Событие об изменении блюда, ожидающее публикации. payload - JSON состояния блюда после изменения
+ * (для удаления - последнего известного состояния), сериализованный при записи.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+@Table(name = "menu_outbox")
+@Entity
+public class MenuOutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "menu_outbox_id_seq")
+    @SequenceGenerator(name = "menu_outbox_id_seq", sequenceName = "menu_outbox_id_seq", allocationSize = 50)
+    private Long id;
+    @Column(name = "event_type", nullable = false)
+    private String eventType;
+    @Column(name = "menu_item_id", nullable = false)
+    private Long menuItemId;
+    @Column(name = "payload", nullable = false)
+    private String payload;
+    @Column(name = "created_at", nullable = false)
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+}
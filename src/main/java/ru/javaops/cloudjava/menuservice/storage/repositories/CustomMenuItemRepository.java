@@ -1,15 +1,116 @@
 package ru.javaops.cloudjava.menuservice.storage.repositories;
 
+import ru.javaops.cloudjava.menuservice.dto.ChangeCursor;
+import ru.javaops.cloudjava.menuservice.dto.MenuField;
+import ru.javaops.cloudjava.menuservice.dto.MenuFilter;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.PageCursor;
 import ru.javaops.cloudjava.menuservice.dto.SortBy;
 import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemTombstone;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface CustomMenuItemRepository {
 
-    int updateMenu(Long id, UpdateMenuRequest dto);
+    /**
+     * Обновляет блюдо одним запросом UPDATE ... RETURNING и возвращает его новое состояние.
+     * Если expectedVersion не null, блюдо обновляется только при совпадении версии.
+     * Пустой результат означает, что блюда с таким id нет или его версия отличается от ожидаемой.
+     */
+    Optional<MenuItem> updateMenu(Long id, UpdateMenuRequest dto, Long expectedVersion);
+
+    /**
+     * Сохраняет блюдо запросом INSERT ... ON CONFLICT (name) DO NOTHING RETURNING и возвращает сохраненное блюдо.
+     * Если блюдо с таким названием уже есть, ничего не сохраняет и возвращает пустой результат без ошибки в БД.
+     */
+    Optional<MenuItem> insertIfAbsent(MenuItem item);
+
+    /**
+     * Обновляет несколько блюд. Блюда группируются по набору изменяемых атрибутов,
+     * и каждая группа обновляется одним UPDATE. Блюда, для которых не задан ни один атрибут, не обновляются.
+     * Возвращает id, вошедшие в запросы UPDATE; блюд с некоторыми из них в БД может не быть.
+     */
+    Set<Long> updateMenus(Map<Long, UpdateMenuRequest> dtos);
 
     List<MenuItem> getMenusFor(Category category, SortBy sortBy);
+
+    /**
+     * Возвращает не более limit блюд категории, следующих за курсором (или с начала, если курсор null).
+     */
+    List<MenuItem> getMenusFor(Category category, SortBy sortBy, PageCursor after, int limit);
+
+    /**
+     * Как {@link #getMenusFor(Category, SortBy, PageCursor, int)}, но читает только столбцы полей fields
+     * сразу в DTO, остальные поля DTO равны null. limit null - без ограничения.
+     */
+    List<MenuItemDto> getMenusFor(Category category, SortBy sortBy, PageCursor after, Integer limit, Set<MenuField> fields);
+
+    /**
+     * Читает блюдо с заполненными полями fields, остальные поля DTO равны null.
+     */
+    Optional<MenuItemDto> findMenu(Long id, Set<MenuField> fields);
+
+    /**
+     * Сохраняет новые блюда, сбрасывая их в БД пачками размером с JDBC batch.
+     * Должен вызываться в рамках транзакции; после вызова блюда отсоединены от контекста персистентности.
+     */
+    void insertAll(List<MenuItem> items);
+
+    /**
+     * Последовательно передает в consumer все блюда в порядке возрастания id, читая их курсором
+     * порциями фиксированного размера. Каждое блюдо отсоединяется от контекста персистентности
+     * после обработки, поэтому потребление памяти не зависит от размера таблицы.
+     */
+    void forEachMenu(Consumer<MenuItem> consumer);
+
+    /**
+     * Номер транзакции, меньше которого все транзакции в БД уже завершены (xmin текущего снимка PostgreSQL).
+     * Изменения с меньшими номерами транзакций уже видны и не могут появиться позже, поэтому
+     * изменения отдаются только до этой границы: иначе изменение транзакции, которая началась раньше,
+     * а закоммитилась позже, оказалось бы перед уже выданным клиенту токеном и было бы пропущено.
+     */
+    long getChangeHorizon();
+
+    /**
+     * Версии категорий из БД (см. таблицу menu_category_versions). Категорий, блюда которых ни разу не изменялись,
+     * в результате нет - их версия равна 0. Читает основную БД, поскольку реплика может отставать.
+     */
+    Map<Category, Long> getCategoryVersions();
+
+    /**
+     * Версия категории в текущей транзакции. После изменения блюд категории строка версии заблокирована
+     * этой транзакцией, поэтому результат - именно та версия, которую категория получит при коммите.
+     */
+    long getCategoryVersion(Category category);
+
+    /**
+     * Возвращает не более limit блюд, удовлетворяющих фильтру, в порядке sortBy.
+     * Все условия проверяются в БД, состав блюд не разбирается в приложении.
+     */
+    List<MenuItem> filterMenus(MenuFilter filter, SortBy sortBy, int limit);
+
+    /**
+     * Ищет не более limit блюд, название или описание которых содержит слова запроса (полнотекстовый поиск)
+     * или название которых похоже на запрос (триграммы, поиск с опечатками). category и sortBy необязательны;
+     * без sortBy блюда упорядочены по релевантности.
+     */
+    List<MenuItem> searchMenus(String query, Category category, SortBy sortBy, int limit);
+
+    /**
+     * Возвращает не более limit блюд, измененных после позиции after транзакциями с номером меньше horizon,
+     * в порядке (номер транзакции, id). Использует индекс (change_xid, id).
+     */
+    List<MenuItem> getChangedMenus(ChangeCursor after, long horizon, int limit);
+
+    /**
+     * Возвращает не более limit удаленных блюд аналогично {@link #getChangedMenus}.
+     */
+    List<MenuItemTombstone> getDeletedMenus(ChangeCursor after, long horizon, int limit);
 }
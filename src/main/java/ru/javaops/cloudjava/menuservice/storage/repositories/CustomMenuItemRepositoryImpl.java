@@ -1,42 +1,181 @@
 package ru.javaops.cloudjava.menuservice.storage.repositories;
 
+import io.hypersistence.utils.hibernate.type.util.ObjectMapperWrapper;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.access.EntityDataAccess;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import ru.javaops.cloudjava.menuservice.dto.ChangeCursor;
+import ru.javaops.cloudjava.menuservice.dto.MenuField;
+import ru.javaops.cloudjava.menuservice.dto.MenuFilter;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.PageCursor;
 import ru.javaops.cloudjava.menuservice.dto.SortBy;
 import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemTombstone;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem_;
 import ru.javaops.cloudjava.menuservice.storage.repositories.updaters.MenuAttrUpdater;
 
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Repository
 public class CustomMenuItemRepositoryImpl implements CustomMenuItemRepository {
 
+    private static final String[] QUERY_SPACES = {MenuItem.TABLE};
+
     private final EntityManager em;
     private final List<MenuAttrUpdater<?>> updaters;
+    private final int batchSize;
+    private final int exportFetchSize;
+    private final double searchSimilarityThreshold;
 
-    public CustomMenuItemRepositoryImpl(EntityManager em, List<MenuAttrUpdater<?>> updaters) {
+    public CustomMenuItemRepositoryImpl(EntityManager em,
+                                        List<MenuAttrUpdater<?>> updaters,
+                                        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize,
+                                        @Value("${menu.export.fetch-size:500}") int exportFetchSize,
+                                        @Value("${menu.search.similarity-threshold:0.4}") double searchSimilarityThreshold) {
         this.em = em;
         this.updaters = updaters;
+        this.batchSize = batchSize;
+        this.exportFetchSize = exportFetchSize;
+        this.searchSimilarityThreshold = searchSimilarityThreshold;
+    }
+
+    /**
+     * Criteria API не поддерживает RETURNING, поэтому запрос собирается вручную из столбцов,
+     * значения которых переданы в dto. Значения передаются только через параметры запроса.
+     */
+    @Transactional
+    @Override
+    public Optional<MenuItem> updateMenu(Long id, UpdateMenuRequest dto, Long expectedVersion) {
+        var sql = new StringBuilder("UPDATE menu_items SET ");
+        Map<String, Object> params = new HashMap<>();
+        for (var updater : updaters) {
+            if (updater.isSetIn(dto)) {
+                var column = updater.columnName();
+                sql.append(column).append(" = :").append(column).append(", ");
+                params.put(column, updater.valueIn(dto));
+            }
+        }
+        sql.append("updated_at = LOCALTIMESTAMP, version = version + 1 WHERE id = :id");
+        params.put("id", id);
+        if (expectedVersion != null) {
+            sql.append(" AND version = :version");
+            params.put("version", expectedVersion);
+        }
+        sql.append(" RETURNING *");
+        // блокируем запись до выполнения запроса, чтобы в кэш не попала и строка, возвращенная RETURNING
+        lockCaches(id);
+        Query query = em.createNativeQuery(sql.toString(), MenuItem.class);
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<MenuItem> updated = query.getResultList();
+        return updated.stream().findFirst();
     }
 
+    // id берется из последовательности menu_items_id_seq значением по умолчанию столбца
     @Transactional
     @Override
-    public int updateMenu(Long id, UpdateMenuRequest dto) {
+    public Optional<MenuItem> insertIfAbsent(MenuItem item) {
+        Query query = em.createNativeQuery("""
+                        INSERT INTO menu_items (name, description, price, category, time_to_cook, weight, image_url,
+                                                ingredient_collection, created_at, updated_at)
+                        VALUES (:name, :description, :price, :category, :timeToCook, :weight, :imageUrl,
+                                CAST(:ingredients AS JSONB), LOCALTIMESTAMP, LOCALTIMESTAMP)
+                        ON CONFLICT (name) DO NOTHING
+                        RETURNING *
+                        """, MenuItem.class)
+                .setParameter("name", item.getName())
+                .setParameter("description", item.getDescription())
+                .setParameter("price", item.getPrice())
+                .setParameter("category", item.getCategory().name())
+                .setParameter("timeToCook", item.getTimeToCook())
+                .setParameter("weight", item.getWeight())
+                .setParameter("imageUrl", item.getImageUrl())
+                .setParameter("ingredients", ObjectMapperWrapper.INSTANCE.toString(item.getIngredientCollection()));
+        @SuppressWarnings("unchecked")
+        List<MenuItem> inserted = query.getResultList();
+        // id нового блюда известен только после вставки; блокировка заменяет уже положенную в кэш строку
+        inserted.forEach(menu -> lockCaches(menu.getId()));
+        return inserted.stream().findFirst();
+    }
+
+    /**
+     * Нативные INSERT и UPDATE с RETURNING выполняются как выборка, поэтому Hibernate сам не блокирует
+     * кэш второго уровня и кэш запросов по menu_items. Делаем то же, что Hibernate делает при обновлении
+     * сущности: запись блюда в кэше заменяется мягкой блокировкой, а результаты запросов по таблице
+     * считаются устаревшими до завершения транзакции. После снятия блокировки в кэш не попадают строки,
+     * прочитанные сессиями, открытыми до коммита, поэтому конкурентное чтение не вернет в кэш старую строку.
+     * Блокировка снимается при завершении транзакции в Hibernate, то есть до слушателей
+     * {@link ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent}, перестраивающих кэши сервиса.
+     */
+    private void lockCaches(Long id) {
+        var session = em.unwrap(SessionImplementor.class);
+        SessionFactoryImplementor factory = session.getFactory();
+        var persister = factory.getMappingMetamodel().getEntityDescriptor(MenuItem.class);
+        EntityDataAccess access = persister.getCacheAccessStrategy();
+        Object key = access.generateCacheKey(id, persister, factory, session.getTenantIdentifier());
+        SoftLock lock = access.lockItem(session, key, null);
+        TimestampsCache timestamps = factory.getCache().getTimestampsCache();
+        timestamps.preInvalidate(QUERY_SPACES, session);
+        session.getActionQueue().registerProcess((success, completed) -> {
+            access.unlockItem(completed, key, lock);
+            timestamps.invalidate(QUERY_SPACES, completed);
+        });
+    }
+
+    @Transactional
+    @Override
+    public Set<Long> updateMenus(Map<Long, UpdateMenuRequest> dtos) {
+        Map<List<MenuAttrUpdater<?>>, Map<Long, UpdateMenuRequest>> groups = new HashMap<>();
+        dtos.forEach((id, dto) -> {
+            List<MenuAttrUpdater<?>> changed = updaters.stream().filter(updater -> updater.isSetIn(dto)).toList();
+            if (!changed.isEmpty()) {
+                groups.computeIfAbsent(changed, key -> new HashMap<>()).put(id, dto);
+            }
+        });
+        Set<Long> updated = new HashSet<>();
         CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaUpdate<MenuItem> criteriaUpdate = cb.createCriteriaUpdate(MenuItem.class);
-        Root<MenuItem> root = criteriaUpdate.from(MenuItem.class);
-        updaters.forEach(updater -> updater.updateAttr(criteriaUpdate, dto));
-        criteriaUpdate.where(cb.equal(root.get(MenuItem_.id), id));
-        return em.createQuery(criteriaUpdate).executeUpdate();
+        for (var group : groups.entrySet()) {
+            CriteriaUpdate<MenuItem> criteriaUpdate = cb.createCriteriaUpdate(MenuItem.class);
+            Root<MenuItem> root = criteriaUpdate.from(MenuItem.class);
+            group.getKey().forEach(updater -> updater.updateAttr(cb, criteriaUpdate, root, group.getValue()));
+            criteriaUpdate.set(root.get(MenuItem_.updatedAt), cb.localDateTime());
+            criteriaUpdate.set(root.get(MenuItem_.version), cb.sum(root.get(MenuItem_.version), 1L));
+            criteriaUpdate.where(root.get(MenuItem_.id).in(group.getValue().keySet()));
+            em.createQuery(criteriaUpdate).executeUpdate();
+            updated.addAll(group.getValue().keySet());
+        }
+        return updated;
     }
 
     @Override
@@ -48,6 +187,261 @@ public class CustomMenuItemRepositoryImpl implements CustomMenuItemRepository {
         query.where(cb.equal(root.get(MenuItem_.category), category));
         CriteriaQuery<MenuItem> select = query.select(root);
         TypedQuery<MenuItem> typedQuery = em.createQuery(select);
-        return typedQuery.getResultList();
+        return cacheable(typedQuery).getResultList();
+    }
+
+    @Override
+    public List<MenuItem> getMenusFor(Category category, SortBy sortBy, PageCursor after, int limit) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<MenuItem> query = cb.createQuery(MenuItem.class);
+        Root<MenuItem> root = query.from(MenuItem.class);
+        Predicate predicate = cb.equal(root.get(MenuItem_.category), category);
+        if (after != null) {
+            predicate = cb.and(predicate, sortBy.getKeysetPredicate(cb, root, after));
+        }
+        query.where(predicate);
+        query.orderBy(sortBy.getKeysetOrder(cb, root));
+        return cacheable(em.createQuery(query.select(root)))
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Кэш запросов хранит id блюд из результата, сами блюда берутся из кэша второго уровня.
+     * Результат перестает использоваться при любом изменении таблицы menu_items.
+     */
+    private static <T> TypedQuery<T> cacheable(TypedQuery<T> query) {
+        return query.setHint(HibernateHints.HINT_CACHEABLE, true)
+                .setHint(HibernateHints.HINT_CACHE_REGION, MenuItem.CATEGORY_QUERY_CACHE_REGION);
+    }
+
+    @Override
+    public List<MenuItemDto> getMenusFor(Category category, SortBy sortBy, PageCursor after, Integer limit, Set<MenuField> fields) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MenuItem> root = query.from(MenuItem.class);
+        Predicate predicate = cb.equal(root.get(MenuItem_.category), category);
+        if (after != null) {
+            predicate = cb.and(predicate, sortBy.getKeysetPredicate(cb, root, after));
+        }
+        query.multiselect(projection(root, fields))
+                .where(predicate)
+                .orderBy(sortBy.getKeysetOrder(cb, root));
+        TypedQuery<Tuple> typedQuery = em.createQuery(query);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+        return typedQuery.getResultList().stream()
+                .map(tuple -> toDto(tuple, fields))
+                .toList();
+    }
+
+    @Override
+    public Optional<MenuItemDto> findMenu(Long id, Set<MenuField> fields) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<MenuItem> root = query.from(MenuItem.class);
+        query.multiselect(projection(root, fields))
+                .where(cb.equal(root.get(MenuItem_.id), id));
+        return em.createQuery(query).getResultList().stream()
+                .findFirst()
+                .map(tuple -> toDto(tuple, fields));
+    }
+
+    /**
+     * Проекция только из столбцов выбранных полей. Она не создает управляемых сущностей и снимков
+     * для dirty checking, а столбец ingredient_collection читается и разбирается из JSON,
+     * только если запрошено поле ingredientCollection.
+     */
+    private static List<Selection<?>> projection(Root<MenuItem> root, Set<MenuField> fields) {
+        return fields.stream()
+                .<Selection<?>>map(field -> root.get(field.getAttribute()).alias(field.getAttribute()))
+                .toList();
+    }
+
+    private static MenuItemDto toDto(Tuple tuple, Set<MenuField> fields) {
+        var dto = new MenuItemDto();
+        fields.forEach(field -> field.set(dto, tuple.get(field.getAttribute())));
+        return dto;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public void insertAll(List<MenuItem> items) {
+        for (int i = 0; i < items.size(); i++) {
+            em.persist(items.get(i));
+            // сбрасываем и очищаем контекст после каждой пачки, чтобы он не рос вместе с размером запроса
+            if ((i + 1) % batchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+    }
+
+    // PostgreSQL читает результат курсором порциями по fetch size только внутри транзакции.
+    // Выгрузка читает каждое блюдо один раз, поэтому не обращается к кэшу второго уровня и не вытесняет из него
+    // часто читаемые блюда. Режим кэша задается для сессии, а не подсказкой запроса: подсказка действует
+    // только до возврата потока, а строки потока загружаются позже
+    @Transactional(readOnly = true, propagation = Propagation.MANDATORY)
+    @Override
+    public void forEachMenu(Consumer<MenuItem> consumer) {
+        var session = em.unwrap(Session.class);
+        var cacheMode = session.getCacheMode();
+        session.setCacheMode(CacheMode.IGNORE);
+        var query = em.createQuery("select m from MenuItem m order by m.id", MenuItem.class)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, exportFetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true);
+        try (Stream<MenuItem> menus = query.getResultStream()) {
+            menus.forEach(menu -> {
+                consumer.accept(menu);
+                em.detach(menu);
+            });
+        } finally {
+            session.setCacheMode(cacheMode);
+        }
+    }
+
+    /**
+     * Оба условия поиска используют GIN индексы (search_vector и триграммы названия) и объединяются
+     * сканированием bitmap, поэтому время поиска зависит от количества найденных блюд, а не от размера таблицы.
+     * Порог похожести оператора {@code <%} задается только для текущей транзакции.
+     */
+    @Transactional(readOnly = true)
+    @Override
+    public List<MenuItem> searchMenus(String query, Category category, SortBy sortBy, int limit) {
+        em.createNativeQuery("SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)")
+                .setParameter("threshold", Double.toString(searchSimilarityThreshold))
+                .getSingleResult();
+        var sql = new StringBuilder("""
+                SELECT m.* FROM menu_items m, websearch_to_tsquery('simple', :query) q
+                WHERE (m.search_vector @@ q OR :query <% m.name)
+                """);
+        if (category != null) {
+            sql.append(" AND m.category = :category");
+        }
+        sql.append(" ORDER BY ");
+        if (sortBy != null) {
+            sql.append(sortBy.getSqlOrder("m"));
+        } else {
+            sql.append("ts_rank(m.search_vector, q) + word_similarity(:query, m.name) DESC, m.id");
+        }
+        sql.append(" LIMIT :limit");
+        Query nativeQuery = em.createNativeQuery(sql.toString(), MenuItem.class)
+                .setParameter("query", query)
+                .setParameter("limit", limit);
+        if (category != null) {
+            nativeQuery.setParameter("category", category.name());
+        }
+        @SuppressWarnings("unchecked")
+        List<MenuItem> found = nativeQuery.getResultList();
+        return found;
+    }
+
+    /**
+     * Наличие ингредиентов проверяется оператором @> по GIN индексу jsonb_path_ops, калорийность - по индексу
+     * на столбце total_calories. Отсутствие ингредиентов индексом не ускоряется, поэтому проверяется только
+     * для строк, отобранных остальными условиями.
+     */
+    @Override
+    public List<MenuItem> filterMenus(MenuFilter filter, SortBy sortBy, int limit) {
+        var sql = new StringBuilder("SELECT m.* FROM menu_items m WHERE TRUE");
+        Map<String, Object> params = new HashMap<>();
+        if (filter.getCategory() != null) {
+            sql.append(" AND m.category = :category");
+            params.put("category", filter.getCategory().name());
+        }
+        if (filter.getIncludedIngredients() != null && !filter.getIncludedIngredients().isEmpty()) {
+            sql.append(" AND m.ingredient_collection @> CAST(:included AS JSONB)");
+            params.put("included", ingredientsJson(filter.getIncludedIngredients()));
+        }
+        if (filter.getExcludedIngredients() != null) {
+            int i = 0;
+            for (String ingredient : filter.getExcludedIngredients()) {
+                var param = "excluded" + i++;
+                sql.append(" AND NOT m.ingredient_collection @> CAST(:").append(param).append(" AS JSONB)");
+                params.put(param, ingredientsJson(List.of(ingredient)));
+            }
+        }
+        if (filter.getMinCalories() != null) {
+            sql.append(" AND m.total_calories >= :minCalories");
+            params.put("minCalories", filter.getMinCalories());
+        }
+        if (filter.getMaxCalories() != null) {
+            sql.append(" AND m.total_calories <= :maxCalories");
+            params.put("maxCalories", filter.getMaxCalories());
+        }
+        sql.append(" ORDER BY ").append(sortBy.getSqlOrder("m")).append(" LIMIT :limit");
+        params.put("limit", limit);
+        Query query = em.createNativeQuery(sql.toString(), MenuItem.class);
+        params.forEach(query::setParameter);
+        @SuppressWarnings("unchecked")
+        List<MenuItem> found = query.getResultList();
+        return found;
+    }
+
+    // документ вида {"ingredients":[{"name":"milk"}]}, содержащийся в ingredient_collection блюд с этими ингредиентами
+    private static String ingredientsJson(Collection<String> names) {
+        var ingredients = names.stream().map(name -> Map.of("name", name)).toList();
+        return ObjectMapperWrapper.INSTANCE.toString(Map.of("ingredients", ingredients));
+    }
+
+    @Override
+    public long getChangeHorizon() {
+        var horizon = em.createNativeQuery("SELECT CAST(CAST(pg_snapshot_xmin(pg_current_snapshot()) AS TEXT) AS BIGINT)")
+                .getSingleResult();
+        return ((Number) horizon).longValue();
+    }
+
+    // транзакция на запись направляется в основную БД
+    @Transactional
+    @Override
+    public Map<Category, Long> getCategoryVersions() {
+        List<?> rows = em.createNativeQuery("SELECT category, version FROM menu_category_versions")
+                .getResultList();
+        Map<Category, Long> versions = new EnumMap<>(Category.class);
+        for (Object row : rows) {
+            var columns = (Object[]) row;
+            versions.put(Category.valueOf((String) columns[0]), ((Number) columns[1]).longValue());
+        }
+        return versions;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Override
+    public long getCategoryVersion(Category category) {
+        List<?> version = em.createNativeQuery("SELECT version FROM menu_category_versions WHERE category = :category")
+                .setParameter("category", category.name())
+                .getResultList();
+        return version.isEmpty() ? 0 : ((Number) version.get(0)).longValue();
+    }
+
+    @Override
+    public List<MenuItem> getChangedMenus(ChangeCursor after, long horizon, int limit) {
+        return getChangesAfter(MenuItem.class, after, horizon, limit);
+    }
+
+    @Override
+    public List<MenuItemTombstone> getDeletedMenus(ChangeCursor after, long horizon, int limit) {
+        return getChangesAfter(MenuItemTombstone.class, after, horizon, limit);
+    }
+
+    /**
+     * Условие записано как xid >= k AND (xid > k OR id > lastId), как и для постраничного вывода по курсору,
+     * чтобы первое условие задавало границу диапазона при сканировании индекса (change_xid, id).
+     */
+    private <T> List<T> getChangesAfter(Class<T> entity, ChangeCursor after, long horizon, int limit) {
+        var jpql = """
+                select e from %s e
+                where e.changeXid >= :xid and (e.changeXid > :xid or e.id > :id) and e.changeXid < :horizon
+                order by e.changeXid, e.id
+                """.formatted(entity.getSimpleName());
+        return em.createQuery(jpql, entity)
+                .setParameter("xid", after.getChangeXid())
+                .setParameter("id", after.getId())
+                .setParameter("horizon", horizon)
+                .setMaxResults(limit)
+                .getResultList();
     }
 }
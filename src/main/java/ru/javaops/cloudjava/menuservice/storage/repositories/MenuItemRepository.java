@@ -13,9 +13,22 @@ import java.util.Set;
 public interface MenuItemRepository extends JpaRepository<MenuItem, Long>, CustomMenuItemRepository {
     @Query("""
             select new ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection(
+                m.id,
                 m.name,
                 m.price
             ) from MenuItem m where m.name in :names
             """)
     List<MenuItemProjection> getMenuInfoForNames(@Param("names") Set<String> names);
+
+    @Query("""
+            select new ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection(
+                m.id,
+                m.name,
+                m.price
+            ) from MenuItem m
+            """)
+    List<MenuItemProjection> getMenuInfoForAll();
+
+    @Query("select m.name from MenuItem m where m.name in :names")
+    Set<String> findExistingNames(@Param("names") Set<String> names);
 }
@@ -0,0 +1,18 @@
+package ru.javaops.cloudjava.menuservice.storage.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+
+import java.util.List;
+
+public interface MenuOutboxRepository extends JpaRepository<MenuOutboxEvent, Long> {
+
+    /**
+     * Блокирует и возвращает не более limit самых старых событий. События, заблокированные другим экземпляром relay,
+     * пропускаются, поэтому несколько экземпляров сервиса разбирают outbox параллельно, не публикуя события дважды.
+     */
+    @Query(value = "SELECT * FROM menu_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<MenuOutboxEvent> lockOldest(@Param("limit") int limit);
+}
@@ -1,11 +1,17 @@
 package ru.javaops.cloudjava.menuservice.storage.repositories.updaters;
 
+import jakarta.persistence.Column;
+import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Root;
 import jakarta.persistence.metamodel.SingularAttribute;
 import lombok.AllArgsConstructor;
 import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem_;
 
+import java.lang.reflect.Field;
+import java.util.Map;
 import java.util.function.Function;
 
 @AllArgsConstructor
@@ -13,10 +19,29 @@ public class MenuAttrUpdater<V> {
     SingularAttribute<MenuItem, V> attr;
     Function<UpdateMenuRequest, V> dtoValueExtractor;
 
-    public void updateAttr(CriteriaUpdate<MenuItem> criteria, UpdateMenuRequest dto) {
-        V dtoValue = dtoValueExtractor.apply(dto);
-        if (dtoValue != null) {
-            criteria.set(attr, dtoValue);
-        }
+    /**
+     * Устанавливает атрибут сразу для нескольких блюд одним выражением
+     * CASE id WHEN :id1 THEN :value1 ... ELSE текущее значение END.
+     */
+    public void updateAttr(CriteriaBuilder cb, CriteriaUpdate<MenuItem> criteria, Root<MenuItem> root,
+                           Map<Long, UpdateMenuRequest> dtos) {
+        CriteriaBuilder.SimpleCase<Long, V> valueById = cb.selectCase(root.get(MenuItem_.id));
+        dtos.forEach((id, dto) -> valueById.when(id, dtoValueExtractor.apply(dto)));
+        criteria.set(root.get(attr), valueById.otherwise(root.get(attr)));
+    }
+
+    public boolean isSetIn(UpdateMenuRequest dto) {
+        return dtoValueExtractor.apply(dto) != null;
+    }
+
+    public V valueIn(UpdateMenuRequest dto) {
+        return dtoValueExtractor.apply(dto);
+    }
+
+    /**
+     * Имя столбца таблицы, в котором хранится атрибут. Используется при построении нативных запросов.
+     */
+    public String columnName() {
+        return ((Field) attr.getJavaMember()).getAnnotation(Column.class).name();
     }
 }
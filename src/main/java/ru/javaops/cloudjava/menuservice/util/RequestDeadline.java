@@ -0,0 +1,89 @@
+package ru.javaops.cloudjava.menuservice.util;
+
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.function.Supplier;
+
+/**
+ * Крайний срок обработки текущего запроса, переданный клиентом в заголовке {@link #HEADER} (оставшиеся миллисекунды).
+ * Срок привязан к потоку, обрабатывающему запрос, и доходит до JDBC, где ограничивает время выполнения
+ * SQL запросов (см. {@link ru.javaops.cloudjava.menuservice.storage.datasource.DeadlineAwareDataSource}).
+ * Общие для нескольких запросов загрузки выполняются со своим сроком (см. {@link #withTimeout}).
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "X-Request-Deadline-Ms";
+
+    private static final ThreadLocal<Deadline> DEADLINE = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static void start(long remainingMillis) {
+        DEADLINE.set(new Deadline(System.nanoTime() + remainingMillis * 1_000_000, true));
+    }
+
+    public static void clear() {
+        DEADLINE.remove();
+    }
+
+    /**
+     * Оставшееся время в миллисекундах (отрицательное, если срок прошел) или пустое значение, если срока нет.
+     */
+    public static OptionalLong remainingMillis() {
+        var remaining = remainingNanos();
+        return remaining.isEmpty() ? remaining : OptionalLong.of(remaining.getAsLong() / 1_000_000);
+    }
+
+    /**
+     * Оставшееся время в наносекундах (отрицательное, если срок прошел) или пустое значение, если срока нет.
+     */
+    public static OptionalLong remainingNanos() {
+        var deadline = DEADLINE.get();
+        return deadline == null ? OptionalLong.empty() : OptionalLong.of(deadline.at() - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        var deadline = DEADLINE.get();
+        return deadline != null && deadline.isExpired();
+    }
+
+    /**
+     * true, если истек срок, заданный клиентом. Истекший срок общей загрузки ({@link #withTimeout})
+     * говорит о медленной БД, а не о нетерпеливом клиенте, поэтому здесь не учитывается.
+     */
+    public static boolean isRequestExpired() {
+        var deadline = DEADLINE.get();
+        return deadline != null && deadline.request() && deadline.isExpired();
+    }
+
+    /**
+     * Выполняет действие с собственным сроком timeout вместо срока текущего запроса. Используется для загрузок,
+     * результат которых получат и другие запросы: они не должны завершаться ошибкой из-за срока одного из них,
+     * но и выполняться без ограничения тоже не должны.
+     */
+    public static <T> T withTimeout(Duration timeout, Supplier<T> action) {
+        var deadline = DEADLINE.get();
+        DEADLINE.set(new Deadline(System.nanoTime() + timeout.toNanos(), false));
+        try {
+            return action.get();
+        } finally {
+            if (deadline != null) {
+                DEADLINE.set(deadline);
+            } else {
+                DEADLINE.remove();
+            }
+        }
+    }
+
+    /**
+     * @param at      момент истечения по System.nanoTime()
+     * @param request срок задан клиентом, а не общей загрузкой
+     */
+    private record Deadline(long at, boolean request) {
+
+        boolean isExpired() {
+            return at - System.nanoTime() <= 0;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- индексы для постраничного вывода блюд категории по курсору (ключ сортировки, id)
+-- для сортировок по убыванию используется обратное сканирование тех же индексов
+CREATE INDEX menu_items_category_name_id_idx ON menu_items (category, name, id);
+CREATE INDEX menu_items_category_price_id_idx ON menu_items (category, price, id);
+CREATE INDEX menu_items_category_created_at_id_idx ON menu_items (category, created_at, id);
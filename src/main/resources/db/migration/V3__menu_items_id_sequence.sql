@@ -0,0 +1,7 @@
+-- переводим генерацию id с IDENTITY на последовательность с шагом 50: Hibernate выделяет id
+-- блоками (pooled optimizer), не выполняя вставку для получения id, и может объединять вставки в JDBC batch
+ALTER TABLE menu_items ALTER COLUMN id DROP IDENTITY;
+CREATE SEQUENCE menu_items_id_seq INCREMENT BY 50 OWNED BY menu_items.id;
+SELECT setval('menu_items_id_seq', COALESCE((SELECT MAX(id) FROM menu_items), 0) + 1);
+-- вставки в обход Hibernate (скрипты, миграции) продолжают получать id из той же последовательности
+ALTER TABLE menu_items ALTER COLUMN id SET DEFAULT nextval('menu_items_id_seq');
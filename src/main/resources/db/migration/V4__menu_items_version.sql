@@ -0,0 +1,2 @@
+-- номер версии блюда для оптимистической блокировки: увеличивается при каждом обновлении строки
+ALTER TABLE menu_items ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
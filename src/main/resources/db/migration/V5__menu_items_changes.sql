@@ -0,0 +1,39 @@
+-- номер транзакции, последней создавшей или изменившей блюдо; по нему клиенты получают изменения
+-- с момента прошлой синхронизации. Заполняется триггером, поэтому учитываются изменения любым способом
+ALTER TABLE menu_items ADD COLUMN change_xid BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX menu_items_change_xid_id_idx ON menu_items (change_xid, id);
+
+-- удаленные блюда, чтобы клиенты могли узнать об удалении при синхронизации
+CREATE TABLE menu_item_tombstones(
+    id BIGINT PRIMARY KEY,
+    category TEXT NOT NULL,
+    change_xid BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT LOCALTIMESTAMP
+);
+CREATE INDEX menu_item_tombstones_change_xid_id_idx ON menu_item_tombstones (change_xid, id);
+
+CREATE FUNCTION menu_items_track_change() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.change_xid := CAST(CAST(pg_current_xact_id() AS TEXT) AS BIGINT);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER menu_items_track_change
+    BEFORE INSERT OR UPDATE ON menu_items
+    FOR EACH ROW EXECUTE FUNCTION menu_items_track_change();
+
+CREATE FUNCTION menu_items_track_delete() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO menu_item_tombstones (id, category, change_xid)
+    VALUES (OLD.id, OLD.category, CAST(CAST(pg_current_xact_id() AS TEXT) AS BIGINT))
+    ON CONFLICT (id) DO UPDATE SET category = EXCLUDED.category,
+                                   change_xid = EXCLUDED.change_xid,
+                                   deleted_at = EXCLUDED.deleted_at;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER menu_items_track_delete
+    AFTER DELETE ON menu_items
+    FOR EACH ROW EXECUTE FUNCTION menu_items_track_delete();
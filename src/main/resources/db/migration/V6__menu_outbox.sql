@@ -0,0 +1,11 @@
+-- события об изменениях блюд для других сервисов (transactional outbox): записываются в той же транзакции,
+-- что и изменение, и публикуются фоновым relay, после чего удаляются
+CREATE SEQUENCE menu_outbox_id_seq INCREMENT BY 50;
+CREATE TABLE menu_outbox(
+    id BIGINT PRIMARY KEY DEFAULT nextval('menu_outbox_id_seq'),
+    event_type TEXT NOT NULL,
+    menu_item_id BIGINT NOT NULL,
+    payload TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+ALTER SEQUENCE menu_outbox_id_seq OWNED BY menu_outbox.id;
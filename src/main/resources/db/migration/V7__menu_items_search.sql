@@ -0,0 +1,10 @@
+-- полнотекстовый поиск по названию и описанию: вектор хранится в генерируемом столбце, совпадения
+-- в названии весят больше. Конфигурация simple не зависит от языка, поэтому одинаково работает для кириллицы и латиницы
+ALTER TABLE menu_items ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('simple', name), 'A') || setweight(to_tsvector('simple', description), 'B')
+) STORED;
+CREATE INDEX menu_items_search_vector_idx ON menu_items USING GIN (search_vector);
+
+-- нечеткий поиск по названию (опечатки): триграммы pg_trgm
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX menu_items_name_trgm_idx ON menu_items USING GIN (name gin_trgm_ops);
@@ -0,0 +1,14 @@
+-- суммарная калорийность ингредиентов блюда
+CREATE FUNCTION menu_total_calories(ingredient_collection JSONB) RETURNS BIGINT
+    LANGUAGE SQL IMMUTABLE PARALLEL SAFE AS $$
+    SELECT COALESCE(SUM(CAST(ingredient ->> 'calories' AS BIGINT)), 0)
+    FROM jsonb_array_elements(ingredient_collection -> 'ingredients') AS ingredient
+$$;
+
+-- калорийность хранится в генерируемом столбце: пересчитывается БД при каждой записи ingredient_collection,
+-- поэтому фильтрация по калорийности не разбирает JSON при чтении и использует индекс
+ALTER TABLE menu_items ADD COLUMN total_calories BIGINT GENERATED ALWAYS AS (menu_total_calories(ingredient_collection)) STORED;
+CREATE INDEX menu_items_total_calories_idx ON menu_items (total_calories);
+
+-- поиск блюд, содержащих ингредиенты (оператор @>)
+CREATE INDEX menu_items_ingredient_collection_idx ON menu_items USING GIN (ingredient_collection jsonb_path_ops);
@@ -0,0 +1,45 @@
+-- версия данных каждой категории, общая для всех экземпляров сервиса: увеличивается триггером при любом изменении
+-- блюд категории, в том числе в обход сервиса, и используется в ETag списков. Строка категории остается
+-- заблокированной до конца транзакции, поэтому версии категории выдаются в порядке коммита изменений.
+-- Категории, блюда которых ни разу не изменялись, имеют версию 0 и строки не имеют
+CREATE TABLE menu_category_versions(
+    category TEXT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+-- одно увеличение на категорию за запрос; категории блокируются по порядку, чтобы запросы не ждали друг друга по кругу
+CREATE FUNCTION menu_items_bump_category_version() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO menu_category_versions AS v (category, version)
+        SELECT DISTINCT category, 1 FROM new_rows ORDER BY category
+        ON CONFLICT (category) DO UPDATE SET version = v.version + 1;
+    ELSIF TG_OP = 'UPDATE' THEN
+        -- блюдо, перенесенное в другую категорию, меняет обе категории
+        INSERT INTO menu_category_versions AS v (category, version)
+        SELECT category, 1 FROM (SELECT category FROM old_rows UNION SELECT category FROM new_rows) AS changed
+        ORDER BY category
+        ON CONFLICT (category) DO UPDATE SET version = v.version + 1;
+    ELSE
+        INSERT INTO menu_category_versions AS v (category, version)
+        SELECT DISTINCT category, 1 FROM old_rows ORDER BY category
+        ON CONFLICT (category) DO UPDATE SET version = v.version + 1;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER menu_items_bump_category_version_insert
+    AFTER INSERT ON menu_items
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION menu_items_bump_category_version();
+
+CREATE TRIGGER menu_items_bump_category_version_update
+    AFTER UPDATE ON menu_items
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION menu_items_bump_category_version();
+
+CREATE TRIGGER menu_items_bump_category_version_delete
+    AFTER DELETE ON menu_items
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION menu_items_bump_category_version();
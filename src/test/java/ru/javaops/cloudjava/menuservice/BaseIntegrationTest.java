@@ -1,9 +1,42 @@
 package ru.javaops.cloudjava.menuservice;
 
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuJsonCache;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuNameIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuSnapshotCache;
+import ru.javaops.cloudjava.menuservice.service.idempotency.IdempotencyKeyStore;
+import ru.javaops.cloudjava.menuservice.storage.datasource.ReadYourWrites;
 
 @AutoConfigureMockMvc
 @SpringBootTest
 public class BaseIntegrationTest extends BaseTest {
+
+    @Autowired
+    private MenuSnapshotCache snapshotCache;
+    @Autowired
+    private MenuPriceIndex priceIndex;
+    @Autowired
+    private IdempotencyKeyStore idempotencyKeys;
+    @Autowired
+    private MenuJsonCache jsonCache;
+    @Autowired
+    private MenuNameIndex nameIndex;
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    // тестовые данные вставляются и удаляются sql скриптами в обход сервиса,
+    // поэтому кэши, общие для всех тестов в контексте, сбрасываем вручную
+    @BeforeEach
+    void resetCaches() {
+        snapshotCache.invalidateAll();
+        priceIndex.invalidate();
+        idempotencyKeys.invalidateAll();
+        jsonCache.invalidateAll();
+        nameIndex.invalidate();
+        readYourWrites.reset();
+    }
 }
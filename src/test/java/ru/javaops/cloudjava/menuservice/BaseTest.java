@@ -1,6 +1,8 @@
 package ru.javaops.cloudjava.menuservice;
 
 import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.test.context.ActiveProfiles;
@@ -31,6 +33,12 @@ public abstract class BaseTest {
     @Autowired
     private EntityManager em;
 
+    // sql скрипты изменяют данные в обход Hibernate, поэтому кэш второго уровня и кэш запросов сбрасываем вручную
+    @BeforeEach
+    void evictHibernateCache() {
+        em.getEntityManagerFactory().unwrap(SessionFactory.class).getCache().evictAllRegions();
+    }
+
     protected Long getIdByName(String name) {
         return em.createQuery("select m.id from MenuItem m where m.name= ?1", Long.class)
                 .setParameter(1, name)
@@ -4,6 +4,7 @@ import dasniko.testcontainers.keycloak.KeycloakContainer;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -94,6 +95,80 @@ public class MenuItemControllerTest extends BaseIntegrationTest {
                 .expectStatus().isNotFound();
     }
 
+    @Test
+    void getMenu_returnsNotModified_whenETagMatches() {
+        var id = getIdByName("Cappuccino");
+        var etag = webTestClient.get()
+                .uri(BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().cacheControl(CacheControl.noCache().cachePublic())
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.get()
+                .uri(BASE_URL + "/" + id)
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void getMenu_withFields_returnsETagOfFieldSet_andNotModifiedWhenItMatches() {
+        var id = getIdByName("Cappuccino");
+        var fullEtag = webTestClient.get()
+                .uri(BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+        var etag = webTestClient.get()
+                .uri(BASE_URL + "/" + id + "?fields=name,price")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+        assertThat(etag).isNotEqualTo(fullEtag);
+
+        webTestClient.get()
+                .uri(BASE_URL + "/" + id + "?fields=name,price")
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        webTestClient.get()
+                .uri(BASE_URL + "/" + id + "?fields=name,price")
+                .ifNoneMatch(fullEtag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void getMenus_returnsNewETag_afterItemInCategoryUpdated() {
+        var etag = webTestClient.get()
+                .uri(BASE_URL + "?category=drinks&sort=az")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+
+        webTestClient.patch()
+                .uri(BASE_URL + "/" + getIdByName("Cappuccino"))
+                .headers(h -> h.setBearerAuth(admin.getAccessToken()))
+                .bodyValue(updateMenuFullRequest())
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri(BASE_URL + "?category=drinks&sort=az")
+                .ifNoneMatch(etag)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().value(HttpHeaders.ETAG, value -> assertThat(value).isNotEqualTo(etag));
+    }
+
     @Test
     void getMenus_returnsCorrectListForDRINKS_sortedByAZ() {
         webTestClient.get()
@@ -126,7 +201,7 @@ public class MenuItemControllerTest extends BaseIntegrationTest {
                     assertThat(response.getId()).isNotNull();
                     assertThat(response.getName()).isEqualTo(dto.getName());
                     assertThat(response.getDescription()).isEqualTo(dto.getDescription());
-                    assertThat(response.getPrice()).isEqualTo(dto.getPrice());
+                    assertThat(response.getPrice()).isEqualByComparingTo(dto.getPrice());
                     assertThat(response.getTimeToCook()).isEqualTo(dto.getTimeToCook());
                     assertThat(response.getImageUrl()).isEqualTo(dto.getImageUrl());
                     assertThat(response.getIngredientCollection()).isEqualTo(dto.getIngredientCollection());
@@ -226,6 +301,45 @@ public class MenuItemControllerTest extends BaseIntegrationTest {
                 });
     }
 
+    @Test
+    void updateMenuItem_acceptsETagFromGet_asIfMatch() {
+        var id = getIdByName("Cappuccino");
+        var etag = webTestClient.get()
+                .uri(BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+
+        var newEtag = webTestClient.patch()
+                .uri(BASE_URL + "/" + id)
+                .headers(h -> h.setBearerAuth(admin.getAccessToken()))
+                .header(HttpHeaders.IF_MATCH, etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(updateMenuFullRequest())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MenuItemDto.class)
+                .getResponseHeaders().getETag();
+        assertThat(newEtag).isNotNull().isNotEqualTo(etag);
+
+        webTestClient.get()
+                .uri(BASE_URL + "/" + id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, newEtag);
+
+        // ETag, полученный до обновления, больше не совпадает с версией блюда
+        webTestClient.patch()
+                .uri(BASE_URL + "/" + id)
+                .headers(h -> h.setBearerAuth(admin.getAccessToken()))
+                .header(HttpHeaders.IF_MATCH, etag)
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(updateMenuFullRequest())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
     @Test
     void updateMenuItem_returnsNotFound_whenItemNotInDb() {
         var update = updateMenuFullRequest();
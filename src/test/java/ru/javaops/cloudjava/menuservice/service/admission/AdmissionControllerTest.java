@@ -0,0 +1,147 @@
+package ru.javaops.cloudjava.menuservice.service.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.javaops.cloudjava.menuservice.config.AdmissionProperties;
+import ru.javaops.cloudjava.menuservice.controller.AdmissionControlFilter;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControllerTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AdmissionProperties properties = new AdmissionProperties(true, 4, Duration.ofSeconds(2), Map.of(
+            TrafficClass.ORDER, new AdmissionProperties.ClassLimits(4, 1, 4, Duration.ofMillis(100), 1.0),
+            TrafficClass.ADMIN, new AdmissionProperties.ClassLimits(1, 1, 2, Duration.ofMillis(100), 1.0),
+            TrafficClass.BROWSE, new AdmissionProperties.ClassLimits(3, 1, 3, Duration.ofMillis(100), 0.5),
+            TrafficClass.EXPORT, new AdmissionProperties.ClassLimits(1, 0, 0, null, 1.0)
+    ));
+    private final AdmissionController admission = new AdmissionController(properties, registry);
+
+    @Test
+    void classify_mapsEndpointsToTrafficClasses() {
+        assertThat(TrafficClass.classify("POST", "/v1/menu-items/menu-info")).isEqualTo(TrafficClass.ORDER);
+        assertThat(TrafficClass.classify("GET", "/v1/menu-items")).isEqualTo(TrafficClass.BROWSE);
+        assertThat(TrafficClass.classify("GET", "/v1/menu-items/1")).isEqualTo(TrafficClass.BROWSE);
+        assertThat(TrafficClass.classify("POST", "/v1/menu-items/bulk")).isEqualTo(TrafficClass.ADMIN);
+        assertThat(TrafficClass.classify("DELETE", "/v1/menu-items/1")).isEqualTo(TrafficClass.ADMIN);
+        assertThat(TrafficClass.classify("GET", "/v1/menu-items/export")).isEqualTo(TrafficClass.EXPORT);
+        assertThat(TrafficClass.classify("GET", "/v1/menu-items/events")).isNull();
+        assertThat(TrafficClass.classify("GET", "/actuator/health")).isNull();
+    }
+
+    @Test
+    void eachClassHasItsOwnLimit() {
+        assertThat(admission.tryAcquire(TrafficClass.ADMIN)).isNotNull();
+        assertThat(admission.tryAcquire(TrafficClass.ADMIN)).isNull();
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNotNull();
+        assertThat(registry.get("menu.admission.requests").tag("class", "admin").tag("result", "rejected").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void lowerPriorityClass_isShedFirst_whenTotalLimitIsFilling() {
+        var browse = admission.tryAcquire(TrafficClass.BROWSE);
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNotNull();
+        // просмотр может занимать только половину общего лимита, хотя лимит класса еще не исчерпан
+        assertThat(admission.tryAcquire(TrafficClass.BROWSE)).isNull();
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNotNull();
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNotNull();
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNull();
+
+        browse.release();
+        assertThat(admission.tryAcquire(TrafficClass.ORDER)).isNotNull();
+    }
+
+    @Test
+    void limit_decreasesOnSlowRequests_andGrowsBackOnFastOnes() {
+        var limit = new AdaptiveLimit(10, 2, 20, Duration.ofMillis(100));
+        long now = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+            limit.release(now, now += Duration.ofMillis(500).toNanos());
+        }
+        assertThat(limit.limit()).isEqualTo(5);
+
+        for (int i = 0; i < 200; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                limit.tryAcquire();
+            }
+            while (limit.inFlight() > 0) {
+                limit.release(now, now + Duration.ofMillis(10).toNanos());
+            }
+            now += Duration.ofMillis(10).toNanos();
+        }
+        assertThat(limit.limit()).isEqualTo(20);
+    }
+
+    @Test
+    void limit_decreasesOncePerWindow_onBurstOfSlowRequests() {
+        var limit = new AdaptiveLimit(10, 2, 20, Duration.ofMillis(100));
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < 10; i++) {
+            assertThat(limit.tryAcquire()).isTrue();
+        }
+        long finishedAt = startedAt + Duration.ofMillis(500).toNanos();
+        for (int i = 0; i < 10; i++) {
+            limit.release(startedAt, finishedAt + i);
+        }
+        // все медленные запросы были допущены до уменьшения, поэтому лимит уменьшился один раз
+        assertThat(limit.limit()).isEqualTo(9);
+
+        // запрос, допущенный уже при новом лимите, открывает следующее окно
+        assertThat(limit.tryAcquire()).isTrue();
+        limit.release(finishedAt + 10, finishedAt + Duration.ofMillis(600).toNanos());
+        assertThat(limit.limit()).isEqualTo(8);
+    }
+
+    @Test
+    void filter_rejectsWithServiceUnavailableAndRetryAfter() throws Exception {
+        var filter = new AdmissionControlFilter(admission, objectMapper(), properties);
+        admission.tryAcquire(TrafficClass.ADMIN);
+
+        var response = new MockHttpServletResponse();
+        var chain = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("PATCH", "/v1/menu-items/1"), response, chain);
+
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+        assertThat(response.getContentAsString()).contains("\"status\":503");
+        assertThat(chain.getRequest()).isNull();
+
+        var admitted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("POST", "/v1/menu-items/menu-info"), admitted, new MockFilterChain());
+        assertThat(admitted.getStatus()).isEqualTo(200);
+    }
+
+    @Test
+    void export_hasFixedLimit_andIsRejectedWithRetryAfter() throws Exception {
+        var filter = new AdmissionControlFilter(admission, objectMapper(), properties);
+        var export = admission.tryAcquire(TrafficClass.EXPORT);
+        assertThat(export).isNotNull();
+
+        var response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/menu-items/export"), response, new MockFilterChain());
+        assertThat(response.getStatus()).isEqualTo(503);
+        assertThat(response.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+
+        export.release();
+        assertThat(admission.limit(TrafficClass.EXPORT)).isEqualTo(1);
+        var admitted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/menu-items/export"), admitted, new MockFilterChain());
+        assertThat(admitted.getStatus()).isEqualTo(200);
+    }
+
+    private static ObjectMapper objectMapper() {
+        return Jackson2ObjectMapperBuilder.json().build();
+    }
+}
@@ -0,0 +1,46 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogVersionTest extends BaseIntegrationTest {
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private MenuService menuService;
+    @Autowired
+    private MenuItemRepository repository;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Test
+    void categoryETag_isTakenFromDatabase_andMatchesInstanceStartedLater() {
+        var drinks = catalogVersion.etag(Category.DRINKS);
+        var salads = catalogVersion.etag(Category.SALADS);
+
+        menuService.updateMenuItem(getIdByName("Cappuccino"), UpdateMenuRequest.builder().price(BigDecimal.ONE).build());
+        var updated = catalogVersion.etag(Category.DRINKS);
+        assertThat(updated).isNotEqualTo(drinks);
+        // удаление записывается в БД при сбросе контекста, версия категории читается уже после него
+        menuService.deleteMenuItem(getIdByName("Wine"));
+        var deleted = catalogVersion.etag(Category.DRINKS);
+        assertThat(deleted).isNotEqualTo(updated);
+        assertThat(catalogVersion.etag(Category.SALADS)).isEqualTo(salads);
+
+        // другой экземпляр или тот же после перезапуска получает те же версии из БД
+        var restarted = new CatalogVersion(repository, eventPublisher);
+        restarted.load();
+        assertThat(restarted.etag(Category.DRINKS)).isEqualTo(deleted);
+    }
+}
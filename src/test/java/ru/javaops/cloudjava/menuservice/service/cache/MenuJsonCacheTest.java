@@ -0,0 +1,87 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.Mockito.*;
+
+class MenuJsonCacheTest {
+
+    private final MenuService menuService = mock(MenuService.class);
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MenuItemRepository repository = mock(MenuItemRepository.class);
+    private final CatalogVersion catalogVersion = new CatalogVersion(repository, mock(ApplicationEventPublisher.class));
+    private MenuJsonCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(menuService.getMenusFor(Category.DRINKS, SortBy.AZ)).thenReturn(List.of(TestData.menuItemDto(1L, "Cappuccino")));
+        when(menuService.getMenu(1L)).thenReturn(TestData.menuItemDto(1L, "Cappuccino"));
+        catalogVersion.load();
+        cache = new MenuJsonCache(menuService, objectMapper, catalogVersion, new SimpleMeterRegistry(), 100);
+    }
+
+    @Test
+    void getMenusFor_serializesOnce_untilCategoryVersionChanges() throws IOException {
+        var first = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isSameAs(first);
+        assertThat(first.json()).isEqualTo(objectMapper.writeValueAsBytes(List.of(TestData.menuItemDto(1L, "Cappuccino"))));
+        verify(menuService, times(1)).getMenusFor(Category.DRINKS, SortBy.AZ);
+
+        var event = new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, TestData.menuItemDto(1L, "Cappuccino"));
+        event.assignCategoryVersion(1);
+        catalogVersion.onMenuItemChanged(event);
+        var second = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(second.version()).isEqualTo(first.version() + 1);
+        verify(menuService, times(2)).getMenusFor(Category.DRINKS, SortBy.AZ);
+    }
+
+    @Test
+    void getMenusFor_isNotCached_whileCategoryVersionIsUnknown() {
+        var event = new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, TestData.menuItemDto(1L, "Cappuccino"));
+        // версия изменения неизвестна, например уведомление пришло от экземпляра предыдущей версии
+        catalogVersion.onMenuItemChanged(event);
+
+        var first = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(first.version()).isEqualTo(CatalogVersion.UNKNOWN);
+        assertThat(catalogVersion.etag(Category.DRINKS, first.version())).isNull();
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isNotSameAs(first);
+        verify(menuService, times(2)).getMenusFor(Category.DRINKS, SortBy.AZ);
+    }
+
+    @Test
+    void getMenusFor_gzipDecompressesToJson() throws IOException {
+        var encoded = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(encoded.gzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(encoded.json());
+        }
+    }
+
+    @Test
+    void getMenu_serializesAgain_afterItemChanged() {
+        var first = cache.getMenu(1L);
+        assertThat(cache.getMenu(1L)).isSameAs(first);
+        assertThat(first.version()).isEqualTo(1L);
+        verify(menuService, times(1)).getMenu(1L);
+
+        cache.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, TestData.menuItemDto(1L, "Cappuccino")));
+        cache.getMenu(1L);
+        verify(menuService, times(2)).getMenu(1L);
+    }
+}
@@ -0,0 +1,70 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.javaops.cloudjava.menuservice.dto.MenuSuggestion;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItemProjection;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.Mockito.*;
+
+class MenuNameIndexTest {
+
+    private final MenuItemRepository repository = mock(MenuItemRepository.class);
+    private MenuNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        when(repository.getMenuInfoForAll()).thenReturn(List.of(
+                new MenuItemProjection(1L, "Греческий салат", BigDecimal.TEN),
+                new MenuItemProjection(2L, "Салат Оливье", BigDecimal.TEN),
+                new MenuItemProjection(3L, "Crème brûlée", BigDecimal.TEN),
+                new MenuItemProjection(4L, "Cappuccino", BigDecimal.TEN)
+        ));
+        index = new MenuNameIndex(repository);
+    }
+
+    @Test
+    void suggest_matchesAnyWordPrefix_ignoringCase() {
+        assertThat(names(index.suggest("САЛ", 10))).containsExactly("Греческий салат", "Салат Оливье");
+        assertThat(names(index.suggest("cap", 10))).containsExactly("Cappuccino");
+        verify(repository, times(1)).getMenuInfoForAll();
+    }
+
+    @Test
+    void suggest_foldsDiacriticsAndYo_andRespectsLimit() {
+        assertThat(names(index.suggest("creme b", 10))).containsExactly("Crème brûlée");
+        assertThat(names(index.suggest("brul", 10))).containsExactly("Crème brûlée");
+        assertThat(MenuNameIndex.fold("Ёжик")).isEqualTo("ежик");
+        assertThat(index.suggest("с", 1)).hasSize(1);
+    }
+
+    @Test
+    void onMenuItemChanged_updatesIndexInPlace() {
+        index.suggest("a", 10);
+        index.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, TestData.menuItemDto(4L, "Latte")));
+        index.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.CREATED, TestData.menuItemDto(5L, "Салат Цезарь")));
+        index.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.DELETED, TestData.menuItemDto(2L, "Салат Оливье")));
+
+        assertThat(index.suggest("cap", 10)).isEmpty();
+        assertThat(names(index.suggest("lat", 10))).containsExactly("Latte");
+        assertThat(names(index.suggest("салат", 10))).containsExactly("Греческий салат", "Салат Цезарь");
+        verify(repository, times(1)).getMenuInfoForAll();
+    }
+
+    @Test
+    void onMenuItemChanged_beforeLoad_doesNotLoadIndex() {
+        index.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.CREATED, TestData.menuItemDto(5L, "Салат Цезарь")));
+        verify(repository, never()).getMenuInfoForAll();
+    }
+
+    private static List<String> names(List<MenuSuggestion> suggestions) {
+        return suggestions.stream().map(MenuSuggestion::getName).toList();
+    }
+}
@@ -0,0 +1,97 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.service.resilience.DatabaseGuard;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MenuSnapshotCacheTest {
+
+    private final MenuItemRepository repository = mock(MenuItemRepository.class);
+    private final MenuItemMapper mapper = mock(MenuItemMapper.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MenuSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        List<MenuItem> drinks = List.of(new MenuItem());
+        when(repository.getMenusFor(Category.DRINKS, SortBy.AZ)).thenReturn(drinks);
+        // репозиторий возвращает блюда в порядке AZ базы данных
+        when(mapper.toDtoList(drinks)).thenReturn(List.of(
+                dto(2L, "Cappuccino", 10, 1),
+                dto(3L, "Tea", 40, 2),
+                dto(1L, "Wine", 30, 3)
+        ));
+        cache = new MenuSnapshotCache(repository, mapper, new DatabaseGuard(CircuitBreaker.ofDefaults("test"), registry),
+                Duration.ofSeconds(10), registry);
+    }
+
+    @Test
+    void getMenusFor_buildsAllOrderingsWithSingleQuery() {
+        assertThat(names(SortBy.AZ)).containsExactly("Cappuccino", "Tea", "Wine");
+        assertThat(names(SortBy.ZA)).containsExactly("Wine", "Tea", "Cappuccino");
+        assertThat(names(SortBy.PRICE_ASC)).containsExactly("Cappuccino", "Wine", "Tea");
+        assertThat(names(SortBy.PRICE_DESC)).containsExactly("Tea", "Wine", "Cappuccino");
+        assertThat(names(SortBy.DATE_ASC)).containsExactly("Cappuccino", "Tea", "Wine");
+        assertThat(names(SortBy.DATE_DESC)).containsExactly("Wine", "Tea", "Cappuccino");
+        verify(repository, times(1)).getMenusFor(any(), any());
+        assertThat(registry.get("menu.snapshot.requests").tag("result", "hit").counter().count()).isEqualTo(5);
+        assertThat(registry.get("menu.snapshot.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void getMenusFor_keepsNameOrderOfDatabaseCollation() {
+        List<MenuItem> salads = List.of(new MenuItem(), new MenuItem());
+        when(repository.getMenusFor(Category.SALADS, SortBy.AZ)).thenReturn(salads);
+        // в лингвистической collation регистр не важен, а String.compareTo поставил бы Banana раньше apple
+        when(mapper.toDtoList(salads)).thenReturn(List.of(dto(4L, "apple", 10, 1), dto(5L, "Banana", 10, 2)));
+
+        assertThat(cache.getMenusFor(Category.SALADS, SortBy.AZ)).extracting(MenuItemDto::getName).containsExactly("apple", "Banana");
+        assertThat(cache.getMenusFor(Category.SALADS, SortBy.ZA)).extracting(MenuItemDto::getName).containsExactly("Banana", "apple");
+    }
+
+    @Test
+    void onMenuItemChanged_rebuildsOnlyChangedCategory() {
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        var soup = TestData.menuItemDto(4L, "Soup", BigDecimal.ONE, Category.LUNCH, null);
+        cache.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.UPDATED, soup));
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        verify(repository, times(1)).getMenusFor(Category.DRINKS, SortBy.AZ);
+
+        cache.onMenuItemChanged(new MenuItemChangedEvent(MenuItemChangedEvent.Type.DELETED, dto(1L, "Wine", 30, 3)));
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        verify(repository, times(2)).getMenusFor(Category.DRINKS, SortBy.AZ);
+    }
+
+    @Test
+    void getMenusFor_returnsUnmodifiableList() {
+        var drinks = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(drinks).isUnmodifiable();
+    }
+
+    private List<String> names(SortBy sortBy) {
+        return cache.getMenusFor(Category.DRINKS, sortBy).stream().map(MenuItemDto::getName).toList();
+    }
+
+    private static MenuItemDto dto(Long id, String name, int price, int minute) {
+        return TestData.menuItemDto(id, name, BigDecimal.valueOf(price), Category.DRINKS, LocalDateTime.of(2024, 2, 18, 10, minute));
+    }
+}
@@ -0,0 +1,149 @@
+package ru.javaops.cloudjava.menuservice.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final SingleFlight<String, List<String>> flight = new SingleFlight<>("test", Duration.ofSeconds(10), registry);
+    private final ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCalls_shareOneLoadAndItsResult() throws Exception {
+        var results = callConcurrently(() -> {
+            awaitRelease();
+            return List.of("Cappuccino");
+        });
+
+        var first = results.get(0).get();
+        for (Future<List<String>> result : results) {
+            assertThat(result.get()).isSameAs(first);
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(count("executed")).isEqualTo(1);
+        assertThat(count("deduplicated")).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void failure_propagatesToAllWaiters_andIsNotCached() throws Exception {
+        var results = callConcurrently(() -> {
+            awaitRelease();
+            throw new IllegalStateException("database is down");
+        });
+
+        for (Future<List<String>> result : results) {
+            assertThatThrownBy(result::get)
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessage("database is down");
+        }
+        assertThat(loads).hasValue(1);
+
+        assertThat(flight.execute("key", () -> List.of("Wine"))).containsExactly("Wine");
+    }
+
+    @Test
+    void waiter_givesUpAtItsDeadline_whileSharedLoadRunsUnderItsOwnTimeout() throws Exception {
+        var loading = new CountDownLatch(1);
+        var loadBudget = new AtomicLong();
+        var leader = executor.submit(() -> {
+            // срок первого запроса короче ожидания, но загрузка выполняется с собственным сроком
+            RequestDeadline.start(50);
+            try {
+                return flight.execute("key", () -> {
+                    loadBudget.set(RequestDeadline.remainingMillis().orElseThrow());
+                    loading.countDown();
+                    awaitRelease();
+                    return List.of("Cappuccino");
+                });
+            } finally {
+                RequestDeadline.clear();
+            }
+        });
+        loading.await();
+
+        RequestDeadline.start(50);
+        try {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> flight.execute("key", () -> List.of("Wine")))
+                    .isInstanceOf(MenuServiceException.class)
+                    .satisfies(e -> assertThat(((MenuServiceException) e).getStatus()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT));
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+            assertThat(RequestDeadline.isRequestExpired()).isTrue();
+            // запрос с истекшим сроком не начинает и не ждет загрузку
+            assertThatThrownBy(() -> flight.execute("other", () -> List.of("Wine")))
+                    .isInstanceOf(MenuServiceException.class);
+        } finally {
+            RequestDeadline.clear();
+        }
+
+        release.countDown();
+        assertThat(leader.get()).containsExactly("Cappuccino");
+        assertThat(loadBudget.get()).isGreaterThan(5_000);
+    }
+
+    private List<Future<List<String>>> callConcurrently(Supplier<List<String>> loader) throws InterruptedException {
+        var started = new CountDownLatch(CALLERS);
+        List<Future<List<String>>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> {
+                started.countDown();
+                return flight.execute("key", () -> {
+                    loads.incrementAndGet();
+                    return loader.get();
+                });
+            }));
+        }
+        started.await();
+        // все вызовы должны успеть присоединиться к загрузке до ее завершения
+        while (count("executed") + count("deduplicated") < CALLERS) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return results;
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private double count(String result) {
+        return registry.get("menu.singleflight.requests").tag("result", result).counter().count();
+    }
+}
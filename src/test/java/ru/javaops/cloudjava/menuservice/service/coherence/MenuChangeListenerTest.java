@@ -0,0 +1,101 @@
+package ru.javaops.cloudjava.menuservice.service.coherence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.cache.CatalogVersion;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+
+import java.math.BigDecimal;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MenuChangeListenerTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MenuService menuService;
+    @Autowired
+    private MenuChangeListener listener;
+    @Autowired
+    private MenuChangeNotifier notifier;
+    @Autowired
+    private CatalogVersion catalogVersion;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void awaitConnected() {
+        await(listener::isConnected);
+    }
+
+    @Test
+    void peerChange_updatesLocalCaches() throws Exception {
+        var id = getIdByName("Cappuccino");
+        var cached = menuService.getMenusFor(Category.DRINKS, SortBy.AZ);
+        long version = catalogVersion.current(Category.DRINKS);
+        long lagCount = registry.get("menu.coherence.lag").timer().count();
+
+        // изменение, сделанное другим экземпляром: запись в БД и уведомление
+        jdbcTemplate.update("UPDATE menu_items SET price = 1 WHERE id = ?", id);
+        long peerVersion = jdbcTemplate.queryForObject(
+                "SELECT version FROM menu_category_versions WHERE category = 'DRINKS'", Long.class);
+        assertThat(peerVersion).isGreaterThan(version);
+        var peerItem = menuService.getMenu(id);
+        peerItem.setPrice(BigDecimal.ONE);
+        notifyAsPeer(new MenuChangeNotification("peer", MenuItemChangedEvent.Type.UPDATED, peerItem,
+                peerVersion, System.currentTimeMillis()));
+
+        // задержка записывается последней, после обработки уведомления всеми подписчиками
+        await(() -> registry.get("menu.coherence.lag").timer().count() == lagCount + 1);
+        assertThat(catalogVersion.current(Category.DRINKS)).isEqualTo(peerVersion);
+        var reloaded = menuService.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(reloaded).isNotSameAs(cached);
+        assertThat(reloaded).filteredOn(menu -> menu.getId().equals(id))
+                .singleElement()
+                .satisfies(menu -> assertThat(menu.getPrice()).isEqualByComparingTo(BigDecimal.ONE));
+    }
+
+    @Test
+    void ownChanges_areSkipped_andNotificationWithoutItem_resyncsAllCaches() throws Exception {
+        long version = catalogVersion.current();
+        double resyncs = registry.get("menu.coherence.resyncs").counter().count();
+        menuService.updateMenuItem(getIdByName("Cappuccino"), UpdateMenuRequest.builder().price(BigDecimal.ONE).build());
+        assertThat(catalogVersion.current()).isEqualTo(version + 1);
+
+        // уведомления доставляются по порядку: после обработки уведомления пира собственное уже пропущено
+        notifyAsPeer(new MenuChangeNotification("peer", MenuItemChangedEvent.Type.UPDATED, null, 0, System.currentTimeMillis()));
+        await(() -> registry.get("menu.coherence.resyncs").counter().count() == resyncs + 1);
+        assertThat(catalogVersion.current()).isEqualTo(version + 2);
+    }
+
+    private void notifyAsPeer(MenuChangeNotification notification) throws Exception {
+        jdbcTemplate.queryForObject("SELECT CAST(pg_notify(?, ?) AS TEXT)", String.class,
+                notifier.channel(), objectMapper.writeValueAsString(notification));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition was not met in 10 seconds").isLessThan(deadline);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
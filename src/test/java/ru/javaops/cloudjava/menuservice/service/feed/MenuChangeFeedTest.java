@@ -0,0 +1,184 @@
+package ru.javaops.cloudjava.menuservice.service.feed;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.javaops.cloudjava.menuservice.service.cache.CatalogVersion;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class MenuChangeFeedTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final CatalogVersion catalogVersion = new CatalogVersion(mock(MenuItemRepository.class), mock(ApplicationEventPublisher.class));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private MenuChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new MenuChangeFeed(catalogVersion, objectMapper, registry, 2, 2,
+                Duration.ofMinutes(1), Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        feed.shutdown();
+    }
+
+    @Test
+    void subscriber_receivesChangeWithCatalogVersion() throws Exception {
+        var emitter = new CapturingEmitter();
+        feed.subscribe(null, emitter);
+        change(MenuItemChangedEvent.Type.UPDATED, 1L);
+        feed.awaitDispatched();
+
+        assertThat(emitter.events).hasSize(1);
+        var event = emitter.events.get(0);
+        assertThat(event).contains("id:" + catalogVersion.epoch() + "-1\n");
+        assertThat(event).contains("event:" + MenuChangeFeed.CHANGE_EVENT + "\n");
+        assertThat(event).contains("\"type\":\"UPDATED\"");
+        assertThat(event).contains("\"catalogVersion\":1");
+        assertThat(event).contains("\"name\":\"Menu 1\"");
+    }
+
+    @Test
+    void subscribe_withLastEventId_replaysMissedEvents() throws Exception {
+        change(MenuItemChangedEvent.Type.CREATED, 1L);
+        change(MenuItemChangedEvent.Type.UPDATED, 2L);
+
+        var emitter = new CapturingEmitter();
+        feed.subscribe(catalogVersion.epoch() + "-1", emitter);
+        feed.awaitDispatched();
+
+        assertThat(emitter.events).hasSize(1);
+        assertThat(emitter.events.get(0)).contains("id:" + catalogVersion.epoch() + "-2\n");
+    }
+
+    @Test
+    void subscribe_withEvictedOrForeignLastEventId_sendsReset() throws Exception {
+        change(MenuItemChangedEvent.Type.CREATED, 1L);
+        change(MenuItemChangedEvent.Type.CREATED, 2L);
+        change(MenuItemChangedEvent.Type.CREATED, 3L);
+
+        var evicted = new CapturingEmitter();
+        feed.subscribe(catalogVersion.epoch() + "-0", evicted);
+        var foreign = new CapturingEmitter();
+        feed.subscribe("other-5", foreign);
+        feed.awaitDispatched();
+
+        for (CapturingEmitter emitter : List.of(evicted, foreign)) {
+            assertThat(emitter.events).hasSize(1);
+            assertThat(emitter.events.get(0))
+                    .contains("id:" + catalogVersion.epoch() + "-3\n")
+                    .contains("event:" + MenuChangeFeed.RESET_EVENT + "\n")
+                    .contains("data:3\n");
+        }
+    }
+
+    @Test
+    void event_carriesCatalogVersionOfItsOwnChange() throws Exception {
+        var emitter = new CapturingEmitter();
+        feed.subscribe(null, emitter);
+        var first = event(MenuItemChangedEvent.Type.UPDATED, 1L);
+        var second = event(MenuItemChangedEvent.Type.UPDATED, 2L);
+        // второе изменение закоммичено параллельно и увеличило версию до уведомления ленты о первом
+        catalogVersion.onMenuItemChanged(first);
+        catalogVersion.onMenuItemChanged(second);
+        feed.onMenuItemChanged(first);
+        feed.awaitDispatched();
+
+        assertThat(emitter.events).hasSize(1);
+        assertThat(emitter.events.get(0)).contains("\"catalogVersion\":1");
+    }
+
+    @Test
+    void slowSubscriber_doesNotDelayOthers_andIsDisconnectedOnOverflow() throws Exception {
+        var slow = new BlockingEmitter();
+        feed.subscribe(null, slow);
+        var fast = new CapturingEmitter();
+        feed.subscribe(null, fast);
+
+        // первое событие занимает отправку медленному подписчику, следующие два заполняют его очередь.
+        // Быстрый подписчик успевает получить первое, иначе при задержке запуска отправки переполнится и его очередь
+        change(MenuItemChangedEvent.Type.UPDATED, 1L);
+        assertThat(slow.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(fast.received(1)).isTrue();
+        change(MenuItemChangedEvent.Type.UPDATED, 2L);
+        change(MenuItemChangedEvent.Type.UPDATED, 3L);
+        assertThat(fast.received(3)).isTrue();
+        assertThat(registry.get("menu.feed.dropped").counter().count()).isZero();
+
+        change(MenuItemChangedEvent.Type.UPDATED, 4L);
+        assertThat(fast.received(4)).isTrue();
+        slow.release.countDown();
+        feed.awaitDispatched();
+        assertThat(registry.get("menu.feed.dropped").counter().count()).isEqualTo(1);
+        assertThat(registry.get("menu.feed.subscribers").gauge().value()).isEqualTo(1);
+    }
+
+    private void change(MenuItemChangedEvent.Type type, Long id) {
+        var event = event(type, id);
+        // в приложении версия увеличивается слушателем с меньшим порядком до уведомления ленты
+        catalogVersion.onMenuItemChanged(event);
+        feed.onMenuItemChanged(event);
+    }
+
+    private static MenuItemChangedEvent event(MenuItemChangedEvent.Type type, Long id) {
+        return new MenuItemChangedEvent(type, TestData.menuItemDto(id, "Menu " + id));
+    }
+
+    private static class CapturingEmitter extends SseEmitter {
+        private final List<String> events = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            events.add(builder.build().stream()
+                    .map(data -> data.getData().toString())
+                    .collect(Collectors.joining()));
+        }
+
+        boolean received(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (events.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            return events.size() >= count;
+        }
+    }
+
+    /**
+     * Подписчик, который не читает данные: отправка блокируется, как при заполненном TCP буфере клиента.
+     */
+    private static class BlockingEmitter extends SseEmitter {
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+    }
+}
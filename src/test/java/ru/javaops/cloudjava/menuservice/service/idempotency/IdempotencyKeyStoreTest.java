@@ -0,0 +1,70 @@
+package ru.javaops.cloudjava.menuservice.service.idempotency;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyKeyStoreTest {
+
+    private final IdempotencyKeyStore store = new IdempotencyKeyStore(Duration.ofHours(1), 1);
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void inFlightKey_isNotEvicted_andNewKeyIsRejectedWhileStoreIsFull() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        Future<Integer> original = executor.submit(() -> store.execute("admin", "key-1", "request", () -> {
+            started.countDown();
+            await(release);
+            return executions.incrementAndGet();
+        }));
+        started.await();
+
+        assertThatThrownBy(() -> store.execute("admin", "key-2", "request", executions::incrementAndGet))
+                .isInstanceOfSatisfying(MenuServiceException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+
+        release.countDown();
+        assertThat(original.get()).isEqualTo(1);
+        // повтор исходного запроса получает его результат, а не выполняется второй раз
+        assertThat(store.execute("admin", "key-1", "request", executions::incrementAndGet)).isEqualTo(1);
+
+        // завершенный запрос вытесняется новым ключом
+        assertThat(store.execute("admin", "key-2", "request", executions::incrementAndGet)).isEqualTo(2);
+        assertThat(store.execute("admin", "key-1", "request", executions::incrementAndGet)).isEqualTo(3);
+    }
+
+    @Test
+    void sameKeyOfDifferentClients_doesNotCollide() {
+        var store = new IdempotencyKeyStore(Duration.ofHours(1), 10);
+        assertThat(store.execute("admin", "key-1", "request", executions::incrementAndGet)).isEqualTo(1);
+        assertThat(store.execute("another-admin", "key-1", "another request", executions::incrementAndGet)).isEqualTo(2);
+        assertThat(store.execute("admin", "key-1", "request", executions::incrementAndGet)).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,18 +1,43 @@
 package ru.javaops.cloudjava.menuservice.service.impl;
 
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.dto.BulkCreateMenuRequest;
+import ru.javaops.cloudjava.menuservice.dto.BulkItemError;
+import ru.javaops.cloudjava.menuservice.dto.BulkUpdateMenuRequest;
+import ru.javaops.cloudjava.menuservice.dto.DeletedMenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.MenuField;
+import ru.javaops.cloudjava.menuservice.dto.MenuInfo;
 import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.OrderMenuRequest;
 import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
 import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.service.cache.CatalogVersion;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.event.MenuItemChangedEvent;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
 import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
 import ru.javaops.cloudjava.menuservice.testutils.TestData;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.Assert.assertThrows;
@@ -23,6 +48,14 @@ public class MenuServiceImplTest extends BaseIntegrationTest {
     private MenuService menuService;
     @Autowired
     private MenuItemRepository repository;
+    @Autowired
+    private MenuPriceIndex priceIndex;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private CatalogVersion catalogVersion;
 
     @Test
     void getMenu_returnsMenu_whenMenuInDb() {
@@ -67,7 +100,9 @@ public class MenuServiceImplTest extends BaseIntegrationTest {
         var now = LocalDateTime.now().minusNanos(1000);
         MenuItemDto result = menuService.createMenuItem(dto);
         assertThat(result.getId()).isNotNull();
-        assertFieldsEquality(result, dto, "name", "description", "price", "imageUrl", "timeToCook");
+        assertFieldsEquality(result, dto, "name", "description", "imageUrl", "timeToCook");
+        // блюдо возвращается в том виде, в котором сохранено в БД: цена с двумя знаками после запятой
+        assertThat(result.getPrice()).isEqualByComparingTo(dto.getPrice());
         assertThat(result.getCreatedAt()).isAfter(now);
         assertThat(result.getUpdatedAt()).isAfter(now);
     }
@@ -82,6 +117,75 @@ public class MenuServiceImplTest extends BaseIntegrationTest {
         );
     }
 
+    @Test
+    void createMenuItem_returnsOriginalResult_whenIdempotencyKeyRepeats() {
+        var first = menuService.createMenuItem(TestData.createMenuRequest(), "admin", "key-1");
+        var count = repository.count();
+        var repeated = menuService.createMenuItem(TestData.createMenuRequest(), "admin", "key-1");
+        assertThat(repeated).isEqualTo(first);
+        assertThat(repository.count()).isEqualTo(count);
+    }
+
+    @Test
+    void createMenuItem_throws_whenIdempotencyKeyReusedWithAnotherRequest() {
+        menuService.createMenuItem(TestData.createMenuRequest(), "admin", "key-1");
+        var ex = assertThrows(
+                MenuServiceException.class,
+                () -> menuService.createMenuItem(TestData.createMenuRequest("Caesar"), "admin", "key-1")
+        );
+        assertThat(ex.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+    }
+
+    @Test
+    void createMenuItem_scopesIdempotencyKeyByClient() {
+        var first = menuService.createMenuItem(TestData.createMenuRequest(), "admin", "key-1");
+        var other = menuService.createMenuItem(TestData.createMenuRequest("Caesar"), "another-admin", "key-1");
+        assertThat(other.getId()).isNotEqualTo(first.getId());
+        assertThat(other.getName()).isEqualTo("Caesar");
+    }
+
+    @Test
+    void updateMenuItem_isVisible_whenOldRowWasReadDuringUpdate() throws Exception {
+        var id = getIdByName("Cappuccino");
+        var updated = new CountDownLatch(1);
+        var readDone = new CountDownLatch(1);
+        var readAfterCommit = new CompletableFuture<String>();
+        var update = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(status -> {
+            menuService.updateMenuItem(id, UpdateMenuRequest.builder().name("Latte").build());
+            // так же, как слушатели, перестраивающие кэши сервиса, читаем блюдо сразу после коммита
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public int getOrder() {
+                    return MenuItemChangedEvent.CACHE_ORDER;
+                }
+
+                @Override
+                public void afterCommit() {
+                    readAfterCommit.complete(CompletableFuture
+                            .supplyAsync(() -> repository.findById(id).orElseThrow().getName())
+                            .join());
+                }
+            });
+            updated.countDown();
+            try {
+                readDone.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        updated.await();
+        // чтение до коммита видит старую строку и пытается положить ее в кэши
+        assertThat(menuService.getMenu(id).getName()).isEqualTo("Cappuccino");
+        assertThat(menuService.getMenusFor(Category.DRINKS, SortBy.AZ)).extracting(MenuItemDto::getName).contains("Cappuccino");
+        readDone.countDown();
+        update.get();
+
+        assertThat(readAfterCommit.get()).isEqualTo("Latte");
+        assertThat(menuService.getMenu(id).getName()).isEqualTo("Latte");
+        assertElementsInOrder(menuService.getMenusFor(Category.DRINKS, SortBy.AZ), MenuItemDto::getName,
+                List.of("Latte", "Tea", "Wine"));
+    }
+
     @Test
     void updateMenuItem_updatesMenuItem_whenItemPresentInDb() {
         var id = getIdByName("Cappuccino");
@@ -108,4 +212,278 @@ public class MenuServiceImplTest extends BaseIntegrationTest {
         assertThrows(MenuServiceException.class,
                 () -> menuService.updateMenuItem(id, update));
     }
+
+    @Test
+    void updateMenuItem_throwsPreconditionFailed_whenVersionIsOutdated() {
+        var id = getIdByName("Cappuccino");
+        var updated = menuService.updateMenuItem(id, TestData.updateMenuFullRequest(), 0L);
+        assertThat(updated.getVersion()).isEqualTo(1L);
+
+        var ex = assertThrows(
+                MenuServiceException.class,
+                () -> menuService.updateMenuItem(id, UpdateMenuRequest.builder().price(BigDecimal.ONE).build(), 0L)
+        );
+        assertThat(ex.getStatus()).isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        assertThat(menuService.getMenu(id).getPrice()).isEqualByComparingTo(new BigDecimal("100.01"));
+    }
+
+    @Test
+    void getMenusForOrder_returnsPriceAndAvailability() {
+        var request = OrderMenuRequest.builder()
+                .menuNames(Set.of("Cappuccino", "Wine", "Unknown"))
+                .build();
+        var infos = menuService.getMenusForOrder(request).getMenuInfos();
+        infos.sort(Comparator.comparing(MenuInfo::getName));
+        assertThat(infos).containsExactly(
+                new MenuInfo("Cappuccino", new BigDecimal("10.00"), true),
+                new MenuInfo("Unknown", null, false),
+                new MenuInfo("Wine", new BigDecimal("30.00"), true)
+        );
+    }
+
+    @Test
+    void getMenusForOrder_reflectsUpdatesMadeThroughService() {
+        var request = OrderMenuRequest.builder()
+                .menuNames(Set.of("Cappuccino", "New Cappuccino"))
+                .build();
+        menuService.getMenusForOrder(request);
+        menuService.updateMenuItem(getIdByName("Cappuccino"), TestData.updateMenuFullRequest());
+
+        var infos = menuService.getMenusForOrder(request).getMenuInfos();
+        infos.sort(Comparator.comparing(MenuInfo::getName));
+        assertThat(infos).containsExactly(
+                new MenuInfo("Cappuccino", null, false),
+                new MenuInfo("New Cappuccino", new BigDecimal("100.01"), true)
+        );
+    }
+
+    @Test
+    void getMenusForOrder_appliesBulkUpdateAsOneIndexVersion() {
+        var request = OrderMenuRequest.builder()
+                .menuNames(Set.of("Cappuccino", "Tea", "Wine", "Red Wine"))
+                .build();
+        menuService.getMenusForOrder(request);
+        var versionBefore = priceIndex.snapshot().version();
+        menuService.updateMenuItems(new BulkUpdateMenuRequest(Map.of(
+                getIdByName("Cappuccino"), UpdateMenuRequest.builder().price(BigDecimal.valueOf(11)).build(),
+                getIdByName("Tea"), UpdateMenuRequest.builder().price(BigDecimal.valueOf(41)).build(),
+                getIdByName("Wine"), UpdateMenuRequest.builder().name("Red Wine").build()
+        )));
+
+        assertThat(priceIndex.snapshot().version()).isEqualTo(versionBefore + 1);
+        var infos = menuService.getMenusForOrder(request).getMenuInfos();
+        infos.sort(Comparator.comparing(MenuInfo::getName));
+        assertThat(infos).containsExactly(
+                new MenuInfo("Cappuccino", new BigDecimal("11.00"), true),
+                new MenuInfo("Red Wine", new BigDecimal("30.00"), true),
+                new MenuInfo("Tea", new BigDecimal("41.00"), true),
+                new MenuInfo("Wine", null, false)
+        );
+    }
+
+    @Test
+    void getMenusFor_DRINKS_returnsPagesLinkedByCursor() {
+        var firstPage = menuService.getMenusFor(Category.DRINKS, SortBy.DATE_DESC, null, 2);
+        assertElementsInOrder(firstPage.getItems(), MenuItemDto::getName, List.of("Tea", "Wine"));
+        assertThat(firstPage.getNextCursor()).isNotNull();
+
+        var secondPage = menuService.getMenusFor(Category.DRINKS, SortBy.DATE_DESC, firstPage.getNextCursor(), 2);
+        assertElementsInOrder(secondPage.getItems(), MenuItemDto::getName, List.of("Cappuccino"));
+        assertThat(secondPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getMenusFor_withFields_returnsOnlyRequestedFieldsAndSortKey() {
+        var fields = MenuField.fromString("name,imageUrl");
+        var firstPage = menuService.getMenusFor(Category.DRINKS, SortBy.PRICE_ASC, null, 2, fields);
+        assertElementsInOrder(firstPage.getItems(), MenuItemDto::getName, List.of("Cappuccino", "Wine"));
+        var item = firstPage.getItems().get(0);
+        assertThat(item.getId()).isNotNull();
+        assertThat(item.getImageUrl()).isNotNull();
+        // цена нужна для курсора следующей страницы
+        assertThat(item.getPrice()).isNotNull();
+        assertThat(item.getDescription()).isNull();
+        assertThat(item.getIngredientCollection()).isNull();
+
+        var secondPage = menuService.getMenusFor(Category.DRINKS, SortBy.PRICE_ASC, firstPage.getNextCursor(), 2, fields);
+        assertElementsInOrder(secondPage.getItems(), MenuItemDto::getName, List.of("Tea"));
+        assertThat(secondPage.getNextCursor()).isNull();
+    }
+
+    @Test
+    void getMenusFor_throws_whenCursorCreatedForAnotherSort() {
+        var cursor = menuService.getMenusFor(Category.DRINKS, SortBy.AZ, null, 1).getNextCursor();
+        assertThrows(
+                MenuServiceException.class,
+                () -> menuService.getMenusFor(Category.DRINKS, SortBy.PRICE_ASC, cursor, 1)
+        );
+    }
+
+    @Test
+    void getMenusFor_snapshotAndPagesOrderMixedCaseAndCyrillicNamesByDatabaseCollation() {
+        List.of("apple", "Banana", "борщ", "Борщ", "Ёж", "яблоко", "zucchini")
+                .forEach(name -> menuService.createMenuItem(TestData.createMenuRequest(name)));
+        for (SortBy sortBy : List.of(SortBy.AZ, SortBy.ZA)) {
+            var snapshot = menuService.getMenusFor(Category.SALADS, sortBy);
+            List<MenuItemDto> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                var page = menuService.getMenusFor(Category.SALADS, sortBy, cursor, 3);
+                paged.addAll(page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            assertThat(paged).extracting(MenuItemDto::getName)
+                    .containsExactlyElementsOf(snapshot.stream().map(MenuItemDto::getName).toList());
+        }
+        // порядок collation базы данных: регистр учитывается только при равенстве букв, Ё сортируется рядом с Е
+        var names = menuService.getMenusFor(Category.SALADS, SortBy.AZ).stream().map(MenuItemDto::getName).toList();
+        assertThat(names.indexOf("apple")).isLessThan(names.indexOf("Banana"));
+        assertThat(names.indexOf("Борщ")).isLessThan(names.indexOf("Ёж"));
+        assertThat(names.indexOf("Ёж")).isLessThan(names.indexOf("яблоко"));
+    }
+
+    @Test
+    void createMenuItems_createsAllItems_inBatches() {
+        var requests = IntStream.range(0, 120)
+                .mapToObj(i -> TestData.createMenuRequest("Salad " + i))
+                .toList();
+        var response = menuService.createMenuItems(new BulkCreateMenuRequest(requests));
+        assertThat(response.getFailed()).isEmpty();
+        assertThat(response.getCreated()).hasSize(120);
+        assertThat(response.getCreated()).allSatisfy(dto -> assertThat(dto.getId()).isNotNull());
+        assertThat(menuService.getMenusFor(Category.SALADS, SortBy.AZ)).hasSize(122);
+    }
+
+    @Test
+    void createMenuItems_reportsConflicts_andCreatesOtherItems() {
+        var requests = List.of(
+                TestData.createMenuRequest("Cappuccino"),
+                TestData.createMenuRequest("Caesar"),
+                TestData.createMenuRequest("Caesar")
+        );
+        var response = menuService.createMenuItems(new BulkCreateMenuRequest(requests));
+        assertElementsInOrder(response.getCreated(), MenuItemDto::getName, List.of("Caesar"));
+        assertElementsInOrder(response.getFailed(), BulkItemError::getIndex, List.of(0, 2));
+        assertThat(getIdByName("Caesar")).isEqualTo(response.getCreated().get(0).getId());
+    }
+
+    @Test
+    void updateMenuItems_updatesItemsWithDifferentChangedFields() {
+        var cappuccinoId = getIdByName("Cappuccino");
+        var teaId = getIdByName("Tea");
+        var wineId = getIdByName("Wine");
+        var request = new BulkUpdateMenuRequest(Map.of(
+                cappuccinoId, UpdateMenuRequest.builder().price(BigDecimal.valueOf(11)).build(),
+                teaId, UpdateMenuRequest.builder().price(BigDecimal.valueOf(41)).build(),
+                wineId, UpdateMenuRequest.builder().name("Red Wine").timeToCook(20L).build(),
+                1000L, UpdateMenuRequest.builder().price(BigDecimal.ONE).build()
+        ));
+        var response = menuService.updateMenuItems(request);
+
+        assertThat(response.getNotFound()).containsExactly(1000L);
+        assertThat(response.getUpdated()).hasSize(3);
+        var drinks = menuService.getMenusFor(Category.DRINKS, SortBy.PRICE_ASC);
+        assertElementsInOrder(drinks, MenuItemDto::getName, List.of("Cappuccino", "Red Wine", "Tea"));
+        assertElementsInOrder(drinks, MenuItemDto::getPrice,
+                List.of(new BigDecimal("11.00"), new BigDecimal("30.00"), new BigDecimal("41.00")));
+        assertThat(menuService.getMenu(wineId).getTimeToCook()).isEqualTo(20L);
+    }
+
+    @Test
+    void updateMenuItems_reportsItemsWithoutChangedFieldsAsUnchanged_andPublishesNoEventForThem() {
+        var cappuccinoId = getIdByName("Cappuccino");
+        var teaId = getIdByName("Tea");
+        var teaVersion = menuService.getMenu(teaId).getVersion();
+        var catalogVersionBefore = catalogVersion.current();
+        var request = new BulkUpdateMenuRequest(Map.of(
+                cappuccinoId, UpdateMenuRequest.builder().price(BigDecimal.valueOf(11)).build(),
+                teaId, new UpdateMenuRequest(),
+                1000L, new UpdateMenuRequest()
+        ));
+        var response = menuService.updateMenuItems(request);
+
+        assertElementsInOrder(response.getUpdated(), MenuItemDto::getId, List.of(cappuccinoId));
+        assertThat(response.getUnchanged()).containsExactly(teaId);
+        assertThat(response.getNotFound()).containsExactly(1000L);
+        assertThat(menuService.getMenu(teaId).getVersion()).isEqualTo(teaVersion);
+        // каждое событие об изменении увеличивает общую версию каталога
+        assertThat(catalogVersion.current()).isEqualTo(catalogVersionBefore + 1);
+    }
+
+    @Test
+    void updateMenuItems_throws_andUpdatesNothing_whenNamesConflict() {
+        var cappuccinoId = getIdByName("Cappuccino");
+        var request = new BulkUpdateMenuRequest(Map.of(
+                cappuccinoId, UpdateMenuRequest.builder().price(BigDecimal.valueOf(11)).build(),
+                getIdByName("Tea"), UpdateMenuRequest.builder().name("Wine").build()
+        ));
+        assertThrows(MenuServiceException.class, () -> menuService.updateMenuItems(request));
+        assertThat(menuService.getMenu(cappuccinoId).getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    void exportMenus_passesAllMenusOrderedById() {
+        var exported = new ArrayList<MenuItemDto>();
+        menuService.exportMenus(exported::add);
+        assertThat(exported).hasSize((int) repository.count());
+        assertThat(exported).isSortedAccordingTo(Comparator.comparing(MenuItemDto::getId));
+        assertThat(exported).extracting(MenuItemDto::getName).contains("Cappuccino", "Tea", "Wine");
+    }
+
+    @Test
+    void exportMenus_doesNotPopulateSecondLevelCache() {
+        var exported = new ArrayList<MenuItemDto>();
+        menuService.exportMenus(exported::add);
+        var cache = entityManagerFactory.getCache();
+        assertThat(exported).isNotEmpty()
+                .allSatisfy(menu -> assertThat(cache.contains(MenuItem.class, menu.getId())).isFalse());
+    }
+
+    @Test
+    void getChanges_returnsAllMenus_andThenOnlyLaterChanges() {
+        var full = menuService.getChanges(null, 1000);
+        assertThat(full.getItems()).hasSize((int) repository.count());
+        assertThat(full.getDeleted()).isEmpty();
+        assertThat(full.isHasMore()).isFalse();
+
+        var cappuccinoId = getIdByName("Cappuccino");
+        var wineId = getIdByName("Wine");
+        menuService.updateMenuItem(cappuccinoId, UpdateMenuRequest.builder().price(BigDecimal.ONE).build());
+        menuService.deleteMenuItem(wineId);
+
+        var delta = menuService.getChanges(full.getNext(), 1000);
+        assertThat(delta.getItems()).extracting(MenuItemDto::getName).containsExactly("Cappuccino");
+        assertThat(delta.getItems().get(0).getPrice()).isEqualByComparingTo(BigDecimal.ONE);
+        assertThat(delta.getDeleted()).extracting(DeletedMenuItemDto::getId).containsExactly(wineId);
+        assertThat(delta.getDeleted().get(0).getCategory()).isEqualTo(Category.DRINKS);
+
+        var empty = menuService.getChanges(delta.getNext(), 1000);
+        assertThat(empty.getItems()).isEmpty();
+        assertThat(empty.getDeleted()).isEmpty();
+    }
+
+    @Test
+    void getChanges_returnsEachChangeOnce_whenPaged() {
+        menuService.deleteMenuItem(getIdByName("Tea"));
+        var names = new ArrayList<String>();
+        var deleted = new ArrayList<Long>();
+        String since = null;
+        boolean hasMore = true;
+        while (hasMore) {
+            var page = menuService.getChanges(since, 2);
+            assertThat(page.getItems().size() + page.getDeleted().size()).isLessThanOrEqualTo(2);
+            page.getItems().forEach(item -> names.add(item.getName()));
+            page.getDeleted().forEach(item -> deleted.add(item.getId()));
+            since = page.getNext();
+            hasMore = page.isHasMore();
+        }
+        assertThat(names).hasSize((int) repository.count()).doesNotHaveDuplicates().doesNotContain("Tea");
+        assertThat(deleted).hasSize(1);
+    }
+
+    @Test
+    void getChanges_throws_whenTokenIsInvalid() {
+        var exception = assertThrows(MenuServiceException.class, () -> menuService.getChanges("not a token", 10));
+        assertThat(exception.getStatus()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
 }
@@ -0,0 +1,54 @@
+package ru.javaops.cloudjava.menuservice.service.outbox;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuOutboxEvent;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuOutboxRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.junit.Assert.assertThrows;
+
+class MenuOutboxRelayTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MenuService menuService;
+    @Autowired
+    private MenuOutboxRepository outboxRepository;
+    @Autowired
+    private MenuOutboxRelay relay;
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void changes_areWrittenToOutbox_andRelayPublishesAndDeletesThem() {
+        var created = menuService.createMenuItem(TestData.createMenuRequest());
+        menuService.updateMenuItem(getIdByName("Cappuccino"), UpdateMenuRequest.builder().price(BigDecimal.ONE).build());
+        menuService.deleteMenuItem(getIdByName("Wine"));
+
+        var events = outboxRepository.findAll(Sort.by("id"));
+        assertThat(events).extracting(MenuOutboxEvent::getEventType).containsExactly("CREATED", "UPDATED", "DELETED");
+        assertThat(events.get(0).getMenuItemId()).isEqualTo(created.getId());
+        assertThat(events.get(0).getPayload()).contains("\"name\":\"" + created.getName() + "\"");
+
+        double relayedBefore = registry.get("menu.outbox.relayed").counter().count();
+        assertThat(relay.relayPending()).isEqualTo(3);
+        assertThat(outboxRepository.count()).isZero();
+        assertThat(registry.get("menu.outbox.relayed").counter().count()).isEqualTo(relayedBefore + 3);
+    }
+
+    @Test
+    void failedChange_writesNothingToOutbox() {
+        var request = TestData.createMenuRequest("Cappuccino");
+        assertThrows(MenuServiceException.class, () -> menuService.createMenuItem(request));
+        assertThat(outboxRepository.count()).isZero();
+    }
+}
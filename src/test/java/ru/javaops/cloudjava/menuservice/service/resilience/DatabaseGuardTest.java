@@ -0,0 +1,133 @@
+package ru.javaops.cloudjava.menuservice.service.resilience;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.exception.MenuServiceException;
+import ru.javaops.cloudjava.menuservice.mapper.MenuItemMapper;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuPriceIndex;
+import ru.javaops.cloudjava.menuservice.service.cache.MenuSnapshotCache;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.testutils.FaultInjectingRepository;
+import ru.javaops.cloudjava.menuservice.testutils.TestData;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DatabaseGuardTest {
+
+    private final MenuItemRepository delegate = mock(MenuItemRepository.class);
+    private final MenuItemMapper mapper = mock(MenuItemMapper.class);
+    private final FaultInjectingRepository faults = new FaultInjectingRepository(delegate);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CircuitBreaker breaker = CircuitBreaker.of("test", CircuitBreakerConfig.custom()
+            .slidingWindowSize(2)
+            .minimumNumberOfCalls(2)
+            .failureRateThreshold(50)
+            .slowCallDurationThreshold(Duration.ofMillis(50))
+            .slowCallRateThreshold(50)
+            .waitDurationInOpenState(Duration.ofHours(1))
+            .permittedNumberOfCallsInHalfOpenState(1)
+            .recordException(DatabaseGuard::isDatabaseFailure)
+            .build());
+    private final DatabaseGuard guard = new DatabaseGuard(breaker, registry);
+    private MenuSnapshotCache cache;
+
+    @BeforeEach
+    void setUp() {
+        List<MenuItem> drinks = List.of(new MenuItem());
+        when(delegate.getMenusFor(Category.DRINKS, SortBy.AZ)).thenReturn(drinks);
+        when(mapper.toDtoList(drinks)).thenReturn(List.of(TestData.menuItemDto(1L, "Cappuccino")));
+        cache = new MenuSnapshotCache(faults.repository(), mapper, guard, Duration.ofSeconds(10), registry);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void databaseFailure_servesLastKnownSnapshot_andOpensBreaker() {
+        var fresh = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(StaleResponse.isMarked()).isFalse();
+
+        cache.invalidateAll();
+        faults.setFailing(true);
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isEqualTo(fresh);
+        assertThat(StaleResponse.isMarked()).isTrue();
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isEqualTo(fresh);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // разомкнутый breaker не пропускает запросы к БД
+        int calls = faults.calls();
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isEqualTo(fresh);
+        assertThat(cache.lastKnownItem(1L).getName()).isEqualTo("Cappuccino");
+        assertThat(faults.calls()).isEqualTo(calls);
+        assertThat(registry.get("menu.stale.responses").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void slowReads_openBreaker_andLaterReadsAreServedStaleWithoutWaiting() {
+        faults.setLatency(Duration.ofMillis(100));
+        var fresh = cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        cache.invalidateAll();
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        cache.invalidateAll();
+        int calls = faults.calls();
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).isEqualTo(fresh);
+        assertThat(StaleResponse.isMarked()).isTrue();
+        assertThat(faults.calls()).isEqualTo(calls);
+    }
+
+    @Test
+    void databaseFailure_withoutLastKnownData_returnsServiceUnavailable() {
+        var priceIndex = new MenuPriceIndex(faults.repository(), guard, Duration.ofSeconds(10), registry);
+        faults.setFailing(true);
+
+        assertThatThrownBy(priceIndex::snapshot)
+                .isInstanceOf(MenuServiceException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(StaleResponse.isMarked()).isFalse();
+    }
+
+    @Test
+    void recovery_closesBreaker_servesFreshData_andNotifiesListeners() {
+        var recovered = new AtomicInteger();
+        guard.onRecovered(recovered::incrementAndGet);
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        cache.invalidateAll();
+        faults.setFailing(true);
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        cache.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(guard.isDegraded()).isTrue();
+
+        faults.setFailing(false);
+        breaker.transitionToHalfOpenState();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(cache.getMenusFor(Category.DRINKS, SortBy.AZ)).extracting(MenuItemDto::getName).containsExactly("Cappuccino");
+        assertThat(StaleResponse.isMarked()).isFalse();
+        assertThat(guard.isDegraded()).isFalse();
+        assertThat(recovered).hasValue(1);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.javaops.cloudjava.menuservice.storage.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+import ru.javaops.cloudjava.menuservice.util.RequestDeadline;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class DeadlineAwareDataSourceTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MenuItemRepository repository;
+    @Autowired
+    private EntityManager em;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private MeterRegistry registry;
+
+    @AfterEach
+    void clearDeadline() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void slowQuery_isCancelledWhenDeadlinePasses() {
+        RequestDeadline.start(200);
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> transactionTemplate.executeWithoutResult(status ->
+                em.createNativeQuery("SELECT CAST(pg_sleep(5) AS TEXT)").getSingleResult()))
+                .isInstanceOf(jakarta.persistence.QueryTimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+
+        RequestDeadline.clear();
+        assertThat(repository.count()).isPositive();
+    }
+
+    @Test
+    void expiredDeadline_failsBeforeQueryIsSent() {
+        RequestDeadline.start(0);
+        assertThatThrownBy(() -> repository.findAll()).isInstanceOf(QueryTimeoutException.class);
+    }
+
+    @Test
+    void requestWithExpiredDeadline_isRejectedWith504() throws Exception {
+        double before = registry.get("menu.deadline.expired").tag("stage", "arrival").counter().count();
+        mockMvc.perform(get("/v1/menu-items/" + getIdByName("Cappuccino")).header(RequestDeadline.HEADER, "0"))
+                .andExpect(status().isGatewayTimeout());
+        mockMvc.perform(get("/v1/menu-items/" + getIdByName("Cappuccino")).header(RequestDeadline.HEADER, "soon"))
+                .andExpect(status().isBadRequest());
+        assertThat(registry.get("menu.deadline.expired").tag("stage", "arrival").counter().count()).isEqualTo(before + 1);
+    }
+}
@@ -0,0 +1,54 @@
+package ru.javaops.cloudjava.menuservice.storage.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.javaops.cloudjava.menuservice.BaseIntegrationTest;
+import ru.javaops.cloudjava.menuservice.dto.MenuField;
+import ru.javaops.cloudjava.menuservice.dto.SortBy;
+import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
+import ru.javaops.cloudjava.menuservice.service.MenuService;
+import ru.javaops.cloudjava.menuservice.storage.model.Category;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTest extends BaseIntegrationTest {
+
+    @Autowired
+    private MenuService menuService;
+    @Autowired
+    private MenuItemRepository repository;
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void reads_goToReplica_writesToPrimary_andReadsAfterWriteToPrimary() {
+        var id = getIdByName("Cappuccino");
+
+        double replica = routed("replica");
+        double primary = routed("primary");
+        repository.findById(id);
+        repository.getMenusFor(Category.DRINKS, SortBy.AZ);
+        assertThat(routed("replica")).isEqualTo(replica + 2);
+        assertThat(routed("primary")).isEqualTo(primary);
+
+        menuService.updateMenuItem(id, UpdateMenuRequest.builder().price(BigDecimal.ONE).build());
+        assertThat(routed("primary")).isGreaterThan(primary);
+
+        // проекция не кэшируется Hibernate, поэтому чтение всегда обращается к БД
+        replica = routed("replica");
+        primary = routed("primary");
+        assertThat(repository.findMenu(id, Set.of(MenuField.ID, MenuField.PRICE))).get()
+                .satisfies(menu -> assertThat(menu.getPrice()).isEqualByComparingTo(BigDecimal.ONE));
+        assertThat(routed("replica")).isEqualTo(replica);
+        assertThat(routed("primary")).isEqualTo(primary + 1);
+    }
+
+    private double routed(String target) {
+        return registry.get("menu.datasource.connections.routed").tag("target", target).counter().count();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.javaops.cloudjava.menuservice.storage.repositories;
 
+import jakarta.persistence.EntityManagerFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -9,6 +10,12 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.javaops.cloudjava.menuservice.BaseTest;
+import ru.javaops.cloudjava.menuservice.config.HibernateCacheConfig;
+import ru.javaops.cloudjava.menuservice.dto.ChangeCursor;
+import ru.javaops.cloudjava.menuservice.dto.MenuField;
+import ru.javaops.cloudjava.menuservice.dto.MenuFilter;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
+import ru.javaops.cloudjava.menuservice.dto.PageCursor;
 import ru.javaops.cloudjava.menuservice.dto.SortBy;
 import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
@@ -17,27 +24,33 @@ import ru.javaops.cloudjava.menuservice.storage.repositories.updaters.MenuAttrUp
 import ru.javaops.cloudjava.menuservice.testutils.TestData;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
 import static org.junit.Assert.assertThrows;
 
 @DataJpaTest
-@Import(MenuAttrUpdaters.class)
+@Import({MenuAttrUpdaters.class, HibernateCacheConfig.class})
 @Transactional(propagation = Propagation.NEVER)
 @AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
 class MenuItemRepositoryImplTest extends BaseTest {
     @Autowired
     private MenuItemRepository menuItemRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
 
     @Test
     void updateMenu_updatesMenu_whenAllUpdateFieldsAreSet() {
         var dto = TestData.updateMenuFullRequest();
         var id = getIdByName("Cappuccino");
-        int updateCount = menuItemRepository.updateMenu(id, dto);
-        assertThat(updateCount).isEqualTo(1);
+        MenuItem returned = menuItemRepository.updateMenu(id, dto, null).orElseThrow();
+        assertFieldsEquality(returned, dto, "name", "description", "price", "timeToCook", "imageUrl");
         MenuItem updated = menuItemRepository.findById(id).get();
         assertFieldsEquality(updated, dto, "name", "description", "price", "timeToCook", "imageUrl");
+        assertThat(updated.getVersion()).isEqualTo(1L);
     }
 
     @Test
@@ -48,8 +61,7 @@ class MenuItemRepositoryImplTest extends BaseTest {
                 .imageUrl("http://images.com/new_cappuccino.png")
                 .build();
         var id = getIdByName("Cappuccino");
-        int updateCount = menuItemRepository.updateMenu(id, dto);
-        assertThat(updateCount).isEqualTo(1);
+        assertThat(menuItemRepository.updateMenu(id, dto, null)).isPresent();
         MenuItem updated = menuItemRepository.findById(id).get();
         assertFieldsEquality(updated, dto, "price", "description", "imageUrl");
     }
@@ -64,14 +76,169 @@ class MenuItemRepositoryImplTest extends BaseTest {
                 .build();
         var id = getIdByName("Cappuccino");
         assertThrows(DataIntegrityViolationException.class,
-                () -> menuItemRepository.updateMenu(id, dto));
+                () -> menuItemRepository.updateMenu(id, dto, null));
     }
 
     @Test
     void updateMenu_updatesNothing_whenNoMenuPresentInDB() {
         var dto = TestData.updateMenuFullRequest();
-        int updateCount = menuItemRepository.updateMenu(1000L, dto);
-        assertThat(updateCount).isEqualTo(0);
+        assertThat(menuItemRepository.updateMenu(1000L, dto, null)).isEmpty();
+    }
+
+    @Test
+    void updateMenu_updatesMenu_whenVersionMatches() {
+        var id = getIdByName("Cappuccino");
+        var dto = UpdateMenuRequest.builder().price(BigDecimal.valueOf(100.01)).build();
+        MenuItem updated = menuItemRepository.updateMenu(id, dto, 0L).orElseThrow();
+        assertThat(updated.getVersion()).isEqualTo(1L);
+        assertThat(updated.getPrice()).isEqualByComparingTo(BigDecimal.valueOf(100.01));
+    }
+
+    @Test
+    void updateMenu_updatesNothing_whenVersionDiffers() {
+        var id = getIdByName("Cappuccino");
+        var dto = UpdateMenuRequest.builder().price(BigDecimal.valueOf(100.01)).build();
+        assertThat(menuItemRepository.updateMenu(id, dto, 5L)).isEmpty();
+        MenuItem unchanged = menuItemRepository.findById(id).get();
+        assertThat(unchanged.getVersion()).isEqualTo(0L);
+        assertThat(unchanged.getPrice()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    void insertIfAbsent_insertsMenu_whenNameIsNew() {
+        var menu = TestData.newMenu("Caesar");
+        MenuItem inserted = menuItemRepository.insertIfAbsent(menu).orElseThrow();
+        assertThat(inserted.getId()).isNotNull();
+        assertThat(inserted.getVersion()).isEqualTo(0L);
+        assertThat(inserted.getIngredientCollection()).isEqualTo(menu.getIngredientCollection());
+        assertThat(menuItemRepository.findById(inserted.getId())).isPresent();
+    }
+
+    @Test
+    void insertIfAbsent_insertsNothing_whenNameExists() {
+        var count = menuItemRepository.count();
+        assertThat(menuItemRepository.insertIfAbsent(TestData.newMenu("Cappuccino"))).isEmpty();
+        assertThat(menuItemRepository.count()).isEqualTo(count);
+    }
+
+    @Test
+    void getChangedMenus_returnsMenusChangedAfterCursor() {
+        long before = menuItemRepository.getChangeHorizon();
+        var id = getIdByName("Cappuccino");
+        menuItemRepository.updateMenu(id, UpdateMenuRequest.builder().price(BigDecimal.ONE).build(), null);
+        long horizon = menuItemRepository.getChangeHorizon();
+
+        var changed = menuItemRepository.getChangedMenus(new ChangeCursor(before, 0), horizon, 10);
+        assertElementsInOrder(changed, MenuItem::getName, List.of("Cappuccino"));
+        assertThat(changed.get(0).getChangeXid()).isGreaterThanOrEqualTo(before).isLessThan(horizon);
+    }
+
+    @Test
+    void getDeletedMenus_returnsTombstone_whenMenuDeleted() {
+        long before = menuItemRepository.getChangeHorizon();
+        var id = getIdByName("Wine");
+        menuItemRepository.deleteById(id);
+
+        var deleted = menuItemRepository.getDeletedMenus(new ChangeCursor(before, 0), menuItemRepository.getChangeHorizon(), 10);
+        assertThat(deleted).hasSize(1);
+        assertThat(deleted.get(0).getId()).isEqualTo(id);
+        assertThat(deleted.get(0).getCategory()).isEqualTo(Category.DRINKS);
+    }
+
+    @Test
+    void searchMenus_findsByWordsInName() {
+        var found = menuItemRepository.searchMenus("salad", null, null, 10);
+        assertThat(found).extracting(MenuItem::getName).containsExactlyInAnyOrder("Green Salad", "Georgian Salad");
+    }
+
+    @Test
+    void searchMenus_findsByNameWithTypo() {
+        var found = menuItemRepository.searchMenus("capucino", null, null, 10);
+        assertElementsInOrder(found, MenuItem::getName, List.of("Cappuccino"));
+    }
+
+    @Test
+    void searchMenus_appliesCategoryAndSort() {
+        var found = menuItemRepository.searchMenus("nice", Category.DRINKS, SortBy.PRICE_DESC, 10);
+        assertElementsInOrder(found, MenuItem::getName, List.of("Tea", "Wine", "Cappuccino"));
+    }
+
+    @Test
+    void findById_isServedFromSecondLevelCache_untilNativeOrBulkUpdate() {
+        var cache = entityManagerFactory.getCache();
+        var id = getIdByName("Cappuccino");
+        menuItemRepository.findById(id);
+        assertThat(cache.contains(MenuItem.class, id)).isTrue();
+
+        // вместо строки в кэше остается снятая мягкая блокировка, она не отдается читателям
+        menuItemRepository.updateMenu(id, UpdateMenuRequest.builder().name("Latte").build(), null);
+        assertThat(menuItemRepository.findById(id).orElseThrow().getName()).isEqualTo("Latte");
+
+        menuItemRepository.updateMenus(Map.of(id, UpdateMenuRequest.builder().name("Flat White").build()));
+        assertThat(cache.contains(MenuItem.class, id)).isFalse();
+        assertThat(menuItemRepository.findById(id).orElseThrow().getName()).isEqualTo("Flat White");
+    }
+
+    @Test
+    void getMenusFor_cachedCategoryQuery_isInvalidatedByInsert() {
+        assertElementsInOrder(menuItemRepository.getMenusFor(Category.SALADS, SortBy.AZ), MenuItem::getName,
+                List.of("Georgian Salad", "Green Salad"));
+        menuItemRepository.insertIfAbsent(TestData.newMenu("Italian Salad"));
+        assertElementsInOrder(menuItemRepository.getMenusFor(Category.SALADS, SortBy.AZ), MenuItem::getName,
+                List.of("Georgian Salad", "Green Salad", "Italian Salad"));
+        assertElementsInOrder(menuItemRepository.getMenusFor(Category.SALADS, SortBy.AZ, null, 10), MenuItem::getName,
+                List.of("Georgian Salad", "Green Salad", "Italian Salad"));
+    }
+
+    @Test
+    void getMenusFor_withFields_fillsOnlySelectedFields() {
+        var menus = menuItemRepository.getMenusFor(Category.DRINKS, SortBy.AZ, null, null,
+                EnumSet.of(MenuField.ID, MenuField.NAME, MenuField.PRICE));
+        assertElementsInOrder(menus, MenuItemDto::getName, List.of("Cappuccino", "Tea", "Wine"));
+        assertThat(menus).allSatisfy(menu -> {
+            assertThat(menu.getId()).isNotNull();
+            assertThat(menu.getPrice()).isNotNull();
+            assertThat(menu.getDescription()).isNull();
+            assertThat(menu.getTimeToCook()).isNull();
+            assertThat(menu.getIngredientCollection()).isNull();
+        });
+    }
+
+    @Test
+    void findMenu_withIngredientsField_readsIngredients() {
+        var id = getIdByName("Cappuccino");
+        var menu = menuItemRepository.findMenu(id, EnumSet.of(MenuField.INGREDIENT_COLLECTION, MenuField.WEIGHT)).orElseThrow();
+        assertThat(menu.getIngredientCollection().getIngredients()).hasSize(3);
+        assertThat(menu.getWeight()).isNotNull();
+        assertThat(menu.getName()).isNull();
+        assertThat(menuItemRepository.findMenu(1000L, EnumSet.of(MenuField.ID))).isEmpty();
+    }
+
+    @Test
+    void filterMenus_returnsMenusContainingAndNotContainingIngredients() {
+        var containsWater = MenuFilter.builder().includedIngredients(Set.of("water")).build();
+        assertElementsInOrder(menuItemRepository.filterMenus(containsWater, SortBy.AZ, 10), MenuItem::getName,
+                List.of("Cappuccino", "Tea", "Wine"));
+
+        var waterWithoutMilk = MenuFilter.builder()
+                .includedIngredients(Set.of("water"))
+                .excludedIngredients(Set.of("milk", "nuts"))
+                .build();
+        assertElementsInOrder(menuItemRepository.filterMenus(waterWithoutMilk, SortBy.AZ, 10), MenuItem::getName,
+                List.of("Tea", "Wine"));
+    }
+
+    @Test
+    void filterMenus_returnsMenusInCaloriesRange() {
+        var range = MenuFilter.builder().minCalories(100L).maxCalories(400L).build();
+        assertElementsInOrder(menuItemRepository.filterMenus(range, SortBy.AZ, 10), MenuItem::getName,
+                List.of("Cappuccino", "Georgian Salad", "Wine"));
+
+        // калорийность нового блюда вычисляется БД при вставке
+        menuItemRepository.insertIfAbsent(TestData.newMenu("Italian Salad"));
+        var salads = MenuFilter.builder().category(Category.SALADS).minCalories(300L).maxCalories(300L).build();
+        assertElementsInOrder(menuItemRepository.filterMenus(salads, SortBy.AZ, 10), MenuItem::getName,
+                List.of("Italian Salad"));
     }
 
     @Test
@@ -115,4 +282,23 @@ class MenuItemRepositoryImplTest extends BaseTest {
         assertThat(drinks).hasSize(3);
         assertElementsInOrder(drinks, MenuItem::getName, List.of("Tea", "Wine", "Cappuccino"));
     }
+
+    @Test
+    void getMenusFor_returnsPageAfterCursor_sortedByPriceDesc() {
+        var firstPage = menuItemRepository.getMenusFor(Category.DRINKS, SortBy.PRICE_DESC, null, 2);
+        assertElementsInOrder(firstPage, MenuItem::getName, List.of("Tea", "Wine"));
+
+        var last = firstPage.get(1);
+        var cursor = new PageCursor(SortBy.PRICE_DESC, last.getPrice().toPlainString(), last.getId());
+        var secondPage = menuItemRepository.getMenusFor(Category.DRINKS, SortBy.PRICE_DESC, cursor, 2);
+        assertElementsInOrder(secondPage, MenuItem::getName, List.of("Cappuccino"));
+    }
+
+    @Test
+    void getMenusFor_returnsPageAfterCursor_whenSortKeysAreEqual() {
+        var tea = menuItemRepository.findById(getIdByName("Tea")).get();
+        var cursor = new PageCursor(SortBy.AZ, "Tea", tea.getId() - 1);
+        var page = menuItemRepository.getMenusFor(Category.DRINKS, SortBy.AZ, cursor, 10);
+        assertElementsInOrder(page, MenuItem::getName, List.of("Tea", "Wine"));
+    }
 }
@@ -0,0 +1,68 @@
+package ru.javaops.cloudjava.menuservice.testutils;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import ru.javaops.cloudjava.menuservice.storage.repositories.MenuItemRepository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Локальная замена {@link MenuItemRepository} для проверки поведения при деградации БД:
+ * передает вызовы делегату, но может добавлять задержку и завершать каждый вызов ошибкой доступа к БД.
+ */
+public class FaultInjectingRepository implements InvocationHandler {
+
+    private final MenuItemRepository delegate;
+    private final MenuItemRepository proxy;
+    private final AtomicInteger calls = new AtomicInteger();
+    private volatile boolean failing;
+    private volatile Duration latency = Duration.ZERO;
+
+    public FaultInjectingRepository(MenuItemRepository delegate) {
+        this.delegate = delegate;
+        this.proxy = (MenuItemRepository) Proxy.newProxyInstance(
+                MenuItemRepository.class.getClassLoader(), new Class<?>[]{MenuItemRepository.class}, this);
+    }
+
+    public MenuItemRepository repository() {
+        return proxy;
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Количество вызовов, дошедших до замены, включая завершенные ошибкой.
+     */
+    public int calls() {
+        return calls.get();
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        calls.incrementAndGet();
+        if (!latency.isZero()) {
+            Thread.sleep(latency.toMillis());
+        }
+        if (failing) {
+            throw new DataAccessResourceFailureException("Injected database fault");
+        }
+        try {
+            return method.invoke(delegate, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package ru.javaops.cloudjava.menuservice.testutils;
 
 import ru.javaops.cloudjava.menuservice.dto.CreateMenuRequest;
+import ru.javaops.cloudjava.menuservice.dto.MenuItemDto;
 import ru.javaops.cloudjava.menuservice.dto.UpdateMenuRequest;
 import ru.javaops.cloudjava.menuservice.storage.model.Category;
 import ru.javaops.cloudjava.menuservice.storage.model.Ingredient;
 import ru.javaops.cloudjava.menuservice.storage.model.IngredientCollection;
+import ru.javaops.cloudjava.menuservice.storage.model.MenuItem;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static ru.javaops.cloudjava.menuservice.testutils.TestConstants.*;
@@ -55,4 +58,38 @@ public class TestData {
                 .ingredientCollection(italianSaladIngredients())
                 .build();
     }
+
+    public static CreateMenuRequest createMenuRequest(String name) {
+        var request = createMenuRequest();
+        request.setName(name);
+        return request;
+    }
+
+    public static MenuItem newMenu(String name) {
+        return MenuItem.builder()
+                .name(name)
+                .description(ITALIAN_SALAD_DESCRIPTION)
+                .price(ITALIAN_SALAD_PRICE)
+                .category(Category.SALADS)
+                .timeToCook(ITALIAN_SALAD_TIME_TO_COOK)
+                .weight(ITALIAN_SALAD_WEIGHT)
+                .imageUrl(ITALIAN_SALAD_IMAGE_URL)
+                .ingredientCollection(italianSaladIngredients())
+                .build();
+    }
+
+    public static MenuItemDto menuItemDto(Long id, String name) {
+        return menuItemDto(id, name, BigDecimal.TEN, Category.DRINKS, null);
+    }
+
+    public static MenuItemDto menuItemDto(Long id, String name, BigDecimal price, Category category, LocalDateTime createdAt) {
+        return MenuItemDto.builder()
+                .id(id)
+                .name(name)
+                .price(price)
+                .category(category)
+                .createdAt(createdAt)
+                .version(1L)
+                .build();
+    }
 }
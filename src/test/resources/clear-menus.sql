@@ -1 +1,3 @@
-delete from menu_items;
\ No newline at end of file
+delete from menu_items;
+delete from menu_item_tombstones;
+delete from menu_outbox;
\ No newline at end of file